@@ -0,0 +1,99 @@
+import com.jmodule.annotation.Command;
+import com.jmodule.annotation.Module;
+import com.jmodule.annotation.Option;
+import com.jmodule.def.CommandLogic;
+import com.jmodule.def.Param;
+import com.jmodule.def.ParamType;
+import com.jmodule.def.ParsedArgs;
+import com.jmodule.def.TypedCommandLogic;
+import com.jmodule.exec.ConsoleClient;
+
+import jmodule.generated.CommandRegistry;
+
+/*
+ * The classes in this file declare the commands of an app with annotations
+ * instead of building them by hand as in ExampleApp. When this file is
+ * compiled with JModule on the class path, JModule's annotation processor
+ * generates the class jmodule.generated.CommandRegistry, which builds the
+ * modules and commands without loading the classes below. Each class is
+ * loaded the first time its command runs.
+ *
+ * Usage: javac -cp jmodule.jar AnnotatedApp.java && java -cp jmodule.jar:. AnnotatedApp
+ */
+
+public class AnnotatedApp {
+
+	// commands nested in a class annotated with @Module belong to that module
+	@Module(name = "math", helpAppend = "\nThese commands were declared with annotations")
+	public static class MathModule {
+
+		@Command(name = "add", description = "Adds 2 numbers together", params = { "First number",
+				"Second number" }, types = { int.class, int.class })
+		public static class Add extends TypedCommandLogic {
+
+			public Add() {
+				super(new Param("First number", ParamType.INT), new Param("Second number", ParamType.INT));
+			}
+
+			@Override
+			public void execute(ParsedArgs args) {
+				System.out.println("Sum: " + (args.getInt(0) + args.getInt(1)) + "\n");
+			}
+		}
+
+		@Command(name = "subtract", description = "Subtracts 2 numbers", references = "sub", params = {
+				"First number", "Second number" }, types = { int.class, int.class })
+		public static class Subtract extends TypedCommandLogic {
+
+			public Subtract() {
+				super(new Param("First number", ParamType.INT), new Param("Second number", ParamType.INT));
+			}
+
+			@Override
+			public void execute(ParsedArgs args) {
+				System.out.println("Difference: " + (args.getInt(0) - args.getInt(1)) + "\n");
+			}
+		}
+
+		// a bounded command with an open range, taking at least 2 parameters
+		@Command(name = "multiply", description = "Multiplies 2 or more numbers", references = { "mult",
+				"mul" }, params = { "First number", "Factors..." }, types = { int.class, int.class }, min = 2)
+		public static class Multiply extends TypedCommandLogic {
+
+			public Multiply() {
+				super(new Param("First number", ParamType.INT), new Param("Factors...", ParamType.INT));
+			}
+
+			@Override
+			public void execute(ParsedArgs args) {
+				int prod = 1;
+				for (int i = 0; i < args.size(); i++) {
+					prod *= args.getInt(i);
+				}
+				System.out.println("Product: " + prod + "\n");
+			}
+		}
+	}
+
+	// commands can also name their module, which does not need to be declared
+	@Command(name = "echo", description = "Prints its parameters", module = "text", params = "words...", min = 0, options = {
+			@Option(flag = 'u', description = "Prints the words in upper case", references = "upper") })
+	public static class Echo extends CommandLogic {
+
+		@Override
+		public void execute(String[] args) {
+			String line = String.join(" ", args);
+			System.out.println((onOption('u') ? line.toUpperCase() : line) + "\n");
+		}
+	}
+
+	public static void main(String[] args) {
+		CommandRegistry registry = new CommandRegistry();
+
+		ConsoleClient client = new ConsoleClient("Annotated App", registry.createModule("math"));
+		client.addModule(registry.createModule("text"));
+		client.enableHistoryLogging(true);
+		client.enableTabCompletion(true);
+		client.runConsole();
+	}
+}
@@ -0,0 +1,55 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import com.jmodule.exec.ConsoleClient;
+
+import jmodule.generated.CommandRegistry;
+
+/*
+ * Test of the arguments of annotated commands. The commands declared in
+ * AnnotatedApp are run with negative numbers, which must be passed to their
+ * int parameters instead of being read as options, and with an argument
+ * after '--'. The test exits with status 1 if any output is wrong.
+ *
+ * Usage: javac -cp jmodule.jar AnnotatedApp.java AnnotatedArgsTest.java
+ *        && java -cp jmodule.jar:. AnnotatedArgsTest
+ */
+
+public class AnnotatedArgsTest {
+
+	private static int failures = 0;
+
+	public static void main(String[] args) throws Exception {
+		CommandRegistry registry = new CommandRegistry();
+		ConsoleClient client = new ConsoleClient("Annotated Args Test", registry.createModule("math"));
+		ConsoleClient text = new ConsoleClient("Annotated Args Test", registry.createModule("text"));
+
+		check(client, "subtract 3 -5", "Difference: 8");
+		check(client, "sub -3 -5", "Difference: 2");
+		check(client, "multiply -2 3 -4", "Product: 24");
+		check(client, "add -- -1 2", "Sum: 1");
+		check(client, "add 1 -x", "Usage: ~$ add <First number> <Second number>");
+		check(text, "echo -u -- -v", "-V");
+
+		System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static void check(ConsoleClient client, String line, String expected) throws Exception {
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream captured = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(captured, true, "UTF-8"));
+		try {
+			client.runStream(new ByteArrayInputStream((line + "\n").getBytes(StandardCharsets.UTF_8)));
+		} finally {
+			System.setOut(stdout);
+		}
+		String output = new String(captured.toByteArray(), StandardCharsets.UTF_8);
+		if (!output.contains(expected)) {
+			failures++;
+			System.out.println("FAIL: '" + line + "' printed:\n" + output);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import com.jmodule.util.FuzzyMatcher;
+
+/*
+ * Latency benchmark for fuzzy completion. A matcher is built over a number of
+ * generated command references, and queries are typed into it one character
+ * at a time, with some characters deleted again along the way, as a user
+ * pressing tab after every keystroke would. The queries are typed many times,
+ * and the median, 99th percentile and average time per keystroke are printed,
+ * along with the best matches of each query.
+ *
+ * Usage: java CompletionBenchmark [references]
+ */
+
+public class CompletionBenchmark {
+
+	private static final int ROUNDS = 200;
+
+	private static final String[] VERBS = { "get", "set", "list", "create", "delete", "update", "show", "describe",
+			"start", "stop", "restart", "sync", "push", "pull", "commit", "merge" };
+	private static final String[] NOUNS = { "user", "group", "role", "policy", "bucket", "object", "cluster", "node",
+			"pod", "service", "volume", "secret", "config", "branch", "tag", "release", "job", "queue" };
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		Random random = new Random(42);
+		ArrayList<String> references = new ArrayList<>();
+		for (int i = 0; references.size() < size; i++) {
+			String verb = VERBS[random.nextInt(VERBS.length)];
+			String noun = NOUNS[random.nextInt(NOUNS.length)];
+			references.add(i % 3 == 0 ? verb + noun.substring(0, 1).toUpperCase() + noun.substring(1) + i
+					: verb + "-" + noun + "-" + i);
+		}
+		FuzzyMatcher matcher = new FuzzyMatcher(references);
+		matcher.setRecent(Arrays.asList(references.get(7), references.get(70000 % size)));
+
+		String[] queries = { "gco", "lsp", "delbuck", "rstrt", "syncb", "cmt-rel-4", "psh", "listUser1" };
+		ArrayList<String> out = new ArrayList<>();
+		for (int warmup = 0; warmup < 50; warmup++) {
+			for (String q : queries) {
+				type(matcher, q, out);
+			}
+		}
+
+		ArrayList<Long> times = new ArrayList<>();
+		long total = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			for (String q : queries) {
+				StringBuilder typed = new StringBuilder();
+				for (int i = 0; i < q.length(); i++) {
+					typed.append(q.charAt(i));
+					if (i == 2) { // a typo, deleted again
+						typed.append('x');
+						times.add(complete(matcher, typed, out));
+						typed.setLength(typed.length() - 1);
+					}
+					times.add(complete(matcher, typed, out));
+				}
+			}
+		}
+		for (long t : times) {
+			total += t;
+		}
+		Collections.sort(times);
+
+		for (String q : queries) {
+			out.clear();
+			matcher.complete(q, 5, out);
+			System.out.printf("%-10s %s%n", q, out);
+		}
+		System.out.printf("%d references: %.1f us median, %.1f us 99th percentile, %.1f us average per keystroke%n",
+				size, times.get(times.size() / 2) / 1e3, times.get(times.size() * 99 / 100) / 1e3,
+				total / 1e3 / times.size());
+	}
+
+	private static void type(FuzzyMatcher matcher, String q, ArrayList<String> out) {
+		for (int i = 1; i <= q.length(); i++) {
+			out.clear();
+			matcher.complete(q.substring(0, i), 50, out);
+		}
+	}
+
+	private static long complete(FuzzyMatcher matcher, CharSequence q, ArrayList<String> out) {
+		out.clear();
+		long start = System.nanoTime();
+		matcher.complete(q, 50, out);
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,155 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.jmodule.def.Command;
+import com.jmodule.def.CommandLogic;
+import com.jmodule.exec.ConsoleClient;
+import com.jmodule.exec.Module;
+import com.jmodule.util.CompletionIndex;
+
+/*
+ * Benchmark of looking up commands among many. A client is given a module of
+ * 10,000 commands, each with an alternate reference, and 100 other modules. A
+ * script of randomly chosen references is run through the client, which
+ * tokenizes each line, finds the command and runs it, and the time per line is
+ * printed. For comparison, the same references are looked up the way the
+ * client did before it indexed commands, by checking the name of every module
+ * and the references of every command in the current module.
+ *
+ * Completion is measured the same way: the commands starting with a short
+ * prefix are found in a completion index, and by checking every reference.
+ *
+ * Usage: java DispatchBenchmark [commands]
+ */
+
+public class DispatchBenchmark {
+
+	private static final int ROUNDS = 10;
+	private static final int LINES = 200000;
+
+	private static long calls = 0;
+
+	public static void main(String[] args) throws IOException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Module home = new Module("home");
+		CommandLogic logic = new CommandLogic() {
+			@Override
+			public void execute(String[] args) {
+				calls++;
+			}
+		};
+		for (int i = 0; i < size; i++) {
+			Command command = new Command("command-" + i, "Does nothing", logic);
+			command.addReference("c" + i);
+			home.addCommand(command);
+		}
+		ConsoleClient client = new ConsoleClient("Dispatch Benchmark", home);
+		ArrayList<Module> modules = new ArrayList<>();
+		modules.add(home);
+		for (int i = 0; i < 100; i++) {
+			Module m = new Module("module" + i);
+			client.addModule(m);
+			modules.add(m);
+		}
+
+		Random random = new Random(42);
+		String[] references = new String[LINES];
+		StringBuilder script = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			int n = random.nextInt(size);
+			references[i] = random.nextBoolean() ? "command-" + n : "c" + n;
+			script.append(references[i]).append('\n');
+		}
+		System.out.printf("%,d commands, %,d lines%n", size, LINES);
+		dispatch(client, script.toString().getBytes(StandardCharsets.UTF_8));
+		scan(modules, home, references);
+
+		String[] prefixes = new String[1000];
+		for (int i = 0; i < prefixes.length; i++) {
+			prefixes[i] = "command-" + random.nextInt(size / 10);
+		}
+		complete(home, prefixes);
+	}
+
+	private static void dispatch(ConsoleClient client, byte[] script) throws IOException {
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			calls = 0;
+			long start = System.nanoTime();
+			client.runStream(new ByteArrayInputStream(script));
+			best = Math.min(best, System.nanoTime() - start);
+			if (calls != LINES) {
+				throw new IllegalStateException("Ran " + calls + " of " + LINES + " commands");
+			}
+		}
+		System.out.printf("  client dispatch:   %,10.0f ns per line%n", (double) best / LINES);
+	}
+
+	private static void scan(ArrayList<Module> modules, Module current, String[] references) {
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long found = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < references.length / 100; i++) {
+				found += find(modules, current, references[i]) != null ? 1 : 0;
+			}
+			best = Math.min(best, System.nanoTime() - start);
+			calls += found;
+		}
+		System.out.printf("  linear scan:       %,10.0f ns per lookup%n", (double) best / (references.length / 100));
+	}
+
+	private static Command find(ArrayList<Module> modules, Module current, String reference) {
+		for (Module m : modules) {
+			if (m.getName().equals(reference)) {
+				return null;
+			}
+		}
+		for (Command cmd : current.getCommands()) {
+			if (cmd.getReferences().contains(reference)) {
+				return cmd;
+			}
+		}
+		return null;
+	}
+
+	private static void complete(Module home, String[] prefixes) {
+		ArrayList<String> references = home.getReferences();
+		CompletionIndex index = new CompletionIndex();
+		for (String reference : references) {
+			index.add(reference);
+		}
+		ArrayList<String> out = new ArrayList<>();
+		long bestIndex = Long.MAX_VALUE;
+		long bestScan = Long.MAX_VALUE;
+		long matches = 0;
+		for (int round = 0; round < ROUNDS * 10; round++) {
+			long start = System.nanoTime();
+			for (String prefix : prefixes) {
+				out.clear();
+				index.complete(prefix, out);
+				matches += out.size();
+			}
+			bestIndex = Math.min(bestIndex, System.nanoTime() - start);
+			start = System.nanoTime();
+			for (String prefix : prefixes) {
+				out.clear();
+				for (String reference : references) {
+					if (reference.startsWith(prefix)) {
+						out.add(reference);
+					}
+				}
+				matches -= out.size();
+			}
+			bestScan = Math.min(bestScan, System.nanoTime() - start);
+		}
+		if (matches != 0) {
+			throw new IllegalStateException("Completion index and scan disagree");
+		}
+		System.out.printf("  completion index:  %,10.0f ns per prefix%n", (double) bestIndex / prefixes.length);
+		System.out.printf("  completion scan:   %,10.0f ns per prefix%n", (double) bestScan / prefixes.length);
+	}
+}
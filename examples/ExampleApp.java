@@ -4,6 +4,10 @@ import com.jmodule.def.BoundedCommand;
 import com.jmodule.def.Command;
 import com.jmodule.def.CommandLogic;
 import com.jmodule.def.Option;
+import com.jmodule.def.Param;
+import com.jmodule.def.ParamType;
+import com.jmodule.def.ParsedArgs;
+import com.jmodule.def.TypedCommandLogic;
 import com.jmodule.exec.ConsoleClient;
 import com.jmodule.exec.Module;
 
@@ -21,42 +25,20 @@ public class ExampleApp {
 	private static int incorrect = 0;
 	private static int attempts = 0;
 
-	private static void add(String[] args) {
-		try {
-			int a = Integer.parseInt(args[0]);
-			int b = Integer.parseInt(args[1]);
-			System.out.println("Sum: " + (a + b) + "\n");
-		} catch (NumberFormatException nfe) {
-			System.out.println("Invalid input!\n");
-		}
+	private static void add(int a, int b) {
+		System.out.println("Sum: " + (a + b) + "\n");
 	}
 
-	private static void subtract(String[] args) {
-		try {
-			int a = Integer.parseInt(args[0]);
-			int b = Integer.parseInt(args[1]);
-			System.out.println("Difference: " + (a - b) + "\n");
-		} catch (NumberFormatException nfe) {
-			System.out.println("Invalid input!\n");
-		}
+	private static void subtract(int a, int b) {
+		System.out.println("Difference: " + (a - b) + "\n");
 	}
 
-	private static void multiply(String[] args) {
-		try {
-			int prod;
-			if (args.length == 0) {
-				prod = 0;
-			} else {
-				prod = 1;
-				for (String str : args) {
-					int fac = Integer.parseInt(str);
-					prod *= fac;
-				}
-			}
-			System.out.println("Product: " + prod + "\n");
-		} catch (NumberFormatException nfe) {
-			System.out.println("Invalid input!\n");
+	private static void multiply(ParsedArgs args) {
+		int prod = args.size() == 0 ? 0 : 1;
+		for (int i = 0; i < args.size(); i++) {
+			prod *= args.getInt(i);
 		}
+		System.out.println("Product: " + prod + "\n");
 	}
 
 	private static void quizme() {
@@ -97,29 +79,31 @@ public class ExampleApp {
 
 		// set up commands
 
-		// 'add' - 2 parameters
+		// 'add' - 2 integer parameters. Parameters declared with a type are converted
+		// before the command runs, and input that is not an integer is rejected with
+		// the command's usage, so the logic reads the numbers directly
 		Command addCmd = new Command("add", "Adds 2 numbers together",
-				new CommandLogic(new String[] {
-						"First number",
-						"Second number" }) {
+				new TypedCommandLogic(
+						new Param("First number", ParamType.INT),
+						new Param("Second number", ParamType.INT)) {
 
 					@Override
-					public void execute(String[] args) {
-						add(args);
+					public void execute(ParsedArgs args) {
+						add(args.getInt(0), args.getInt(1));
 					}
 
 				});
 
 		
-		// 'subtract' - 2 parameters
+		// 'subtract' - 2 integer parameters
 		Command subCmd = new Command("subtract", "Subtracts 2 numbers",
-				new CommandLogic(new String[] {
-						"First number", 
-						"Second number" }) {
+				new TypedCommandLogic(
+						new Param("First number", ParamType.INT),
+						new Param("Second number", ParamType.INT)) {
 
 					@Override
-					public void execute(String[] args) {
-						subtract(args);
+					public void execute(ParsedArgs args) {
+						subtract(args.getInt(0), args.getInt(1));
 					}
 
 				});
@@ -140,18 +124,18 @@ public class ExampleApp {
 		 * 
 		 * BoundedCommmand(String name, String description, CommandLogic logic, int min, int max)
 		 * 
-		 * Note that in a bounded or indefinite command, the String[] params in the CommandLogic
+		 * Note that in a bounded or indefinite command, the number of params in the CommandLogic
 		 * constructor does not affect how the command runs, but only what shows in the command's
-		 * usage info.
+		 * usage info. Arguments past the last param have the last param's type.
 		 * 
 		 */
 		Command multCmd = new BoundedCommand("multiply", "Multiplies 2 or more numbers",
-				new CommandLogic(new String[] {
-						"First number",
-						"Factors..." }) {
+				new TypedCommandLogic(
+						new Param("First number", ParamType.INT),
+						new Param("Factors...", ParamType.INT)) {
 
 			@Override
-			public void execute(String[] args) {
+			public void execute(ParsedArgs args) {
 				multiply(args);
 
 			}
@@ -171,7 +155,9 @@ public class ExampleApp {
 				quizme();
 			}
 
-		});
+			// this command reads whole lines from the console, so the terminal must be
+			// in regular input mode while it runs
+		}.setRegularInputRequired(true));
 		quizCmd.addReference("qm"); // add an alternative reference to this command
 		
 		// 'info' - no parameters
@@ -235,6 +221,10 @@ public class ExampleApp {
 		// enable alerts
 		client.enableAlerts(true);
 
+		// enable the 'stats' command and expose the same statistics over JMX
+		client.enableStatsCommand(true);
+		client.registerMBean();
+
 		// customize prompt
 		client.setPromptDisplayName("ExampleApp-v1.0");
 		client.setModuleSeparator("/");
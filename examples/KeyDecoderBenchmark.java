@@ -0,0 +1,128 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import com.jmodule.util.KeyDecoder;
+import com.jmodule.util.LineEditor;
+
+/*
+ * Throughput benchmark for the key decoder. Each recording is a file of the
+ * bytes a terminal sent in raw input mode, for example captured with
+ * "stty raw -echo; cat > keys.rec; stty sane". Without arguments, a recording
+ * of a typical session is generated: commands typed in ASCII and UTF-8, with
+ * arrow, Home, End, Delete and Ctrl-arrow keys, history recall and pastes.
+ *
+ * Every recording is decoded on its own, reading one byte per call as a
+ * terminal read loop would and then in blocks, and then typed into a line
+ * editor. The keys decoded per second and the reads per key are printed.
+ *
+ * Usage: java KeyDecoderBenchmark [recording...]
+ */
+
+public class KeyDecoderBenchmark {
+
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args) throws Exception {
+		ArrayList<String> names = new ArrayList<>();
+		ArrayList<byte[]> recordings = new ArrayList<>();
+		if (args.length == 0) {
+			names.add("generated session");
+			recordings.add(generate(20000));
+		}
+		for (String arg : args) {
+			names.add(arg);
+			recordings.add(Files.readAllBytes(Paths.get(arg)));
+		}
+
+		for (int r = 0; r < recordings.size(); r++) {
+			byte[] bytes = recordings.get(r);
+			System.out.printf("%s: %d bytes%n", names.get(r), bytes.length);
+			decode(bytes, 1);
+			decode(bytes, 4096);
+			edit(bytes);
+		}
+	}
+
+	private static void decode(byte[] bytes, int bufferSize) throws IOException {
+		long keys = 0;
+		long reads = 0;
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			CountingStream in = new CountingStream(new ByteArrayInputStream(bytes));
+			KeyDecoder decoder = new KeyDecoder(in, bufferSize);
+			keys = 0;
+			long start = System.nanoTime();
+			while (decoder.next() != KeyDecoder.EOF) {
+				keys++;
+			}
+			best = Math.min(best, System.nanoTime() - start);
+			reads = in.reads;
+		}
+		System.out.printf("  decode, %4d byte reads: %,12.0f keys/s, %6.1f MB/s, %.4f reads per key%n", bufferSize,
+				keys / (best / 1e9), bytes.length / (best / 1e9) / 1e6, (double) reads / keys);
+	}
+
+	private static void edit(byte[] bytes) throws IOException, InterruptedException {
+		long best = Long.MAX_VALUE;
+		long lines = 0;
+		ArrayList<String> references = new ArrayList<>();
+		for (int round = 0; round < ROUNDS; round++) {
+			LineEditor editor = new LineEditor(new ByteArrayInputStream(bytes), OutputStream.nullOutputStream());
+			editor.setHistoryEnabled(true);
+			lines = 0;
+			long start = System.nanoTime();
+			while (!editor.isEndOfInput()) {
+				editor.addHistory(editor.promptUserInput(references, "> "));
+				lines++;
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("  line editor:            %,12.0f bytes/s, %,10.0f lines/s%n", bytes.length / (best / 1e9),
+				lines / (best / 1e9));
+	}
+
+	/*
+	 * Builds a recording of a session of the given number of lines
+	 */
+	private static byte[] generate(int lines) throws IOException {
+		String[] commands = { "git commit -m \"fix parser\"", "ls -la /tmp", "grep -r TODO src", "echo h\u00e9llo w\u00f6rld",
+				"make test", "cd ~/projects/jmodule", "echo \u65e5\u672c\u8a9e\u306e\u30c6\u30ad\u30b9\u30c8", "cat notes.txt | wc -l" };
+		String[] edits = { "", "\033[D\033[D\033[3~", "\033[H#\033[F", "\033[1;5D\033[1;5C!", "\033[A",
+				"\033[A\033[A\033[B", "\033b\033\177", "\033[200~pasted text\033[201~" };
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < lines; i++) {
+			out.write(commands[i % commands.length].getBytes(StandardCharsets.UTF_8));
+			out.write(edits[i * 7 % edits.length].getBytes(StandardCharsets.UTF_8));
+			out.write('\n');
+		}
+		return out.toByteArray();
+	}
+
+	private static class CountingStream extends FilterInputStream {
+		long reads = 0;
+
+		CountingStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			reads++;
+			return super.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			reads++;
+			return super.read(b, off, len);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import com.jmodule.util.LineEditor;
+
+/*
+ * Benchmark of editing long lines. A line of 10,000 characters is typed into
+ * a line editor one keystroke at a time at the end of the line, typed with
+ * every keystroke in the middle of the line, and pasted with bracketed paste.
+ * For comparison, keystrokes in the middle of the line are also applied to a
+ * list of boxed characters that is turned back into a string after each
+ * keystroke, as the editor did before it kept the line in a gap buffer. The
+ * time per character entered and per line is printed.
+ *
+ * Usage: java LineEditorBenchmark [line length]
+ */
+
+public class LineEditorBenchmark {
+
+	private static final int ROUNDS = 10;
+	private static final String LEFT = "\033[D";
+
+	public static void main(String[] args) throws Exception {
+		int length = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		System.out.printf("line of %,d characters%n", length);
+
+		StringBuilder end = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			end.append(letter(i));
+		}
+		edit("typed at the end", end + "\n", false);
+
+		// typing two characters and moving left once keeps the cursor in the middle
+		StringBuilder middle = new StringBuilder();
+		for (int i = 0; i < length; i += 2) {
+			middle.append(letter(i)).append(letter(i + 1)).append(LEFT);
+		}
+		edit("typed in the middle", middle + "\n", false);
+
+		edit("pasted", "\033[200~" + end + "\033[201~\n", true);
+
+		boxedList(length);
+	}
+
+	private static char letter(int i) {
+		return (char) ('a' + i % 26);
+	}
+
+	private static void edit(String name, String keys, boolean paste)
+			throws IOException, InterruptedException {
+		byte[] bytes = keys.getBytes(StandardCharsets.UTF_8);
+		ArrayList<String> references = new ArrayList<>();
+		long best = Long.MAX_VALUE;
+		int entered = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			LineEditor editor = new LineEditor(new ByteArrayInputStream(bytes), OutputStream.nullOutputStream());
+			editor.setBracketedPasteEnabled(paste);
+			long start = System.nanoTime();
+			entered = editor.promptUserInput(references, "> ").length();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("  %-22s %,10.0f ns per character, %8.2f ms per line%n", name + ":", (double) best / entered,
+				best / 1e6);
+	}
+
+	/*
+	 * Inserts characters in the middle of a list of boxed characters and rebuilds
+	 * the line by string concatenation after each one, as the editor used to.
+	 * This is slow enough that only the last characters of the line are timed.
+	 */
+	private static void boxedList(int length) {
+		ArrayList<Character> line = new ArrayList<>();
+		for (int i = 0; i < length - 100; i++) {
+			line.add(letter(i));
+		}
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		long start = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			line.add(line.size() / 2, letter(i));
+			String redrawn = "";
+			for (char c : line) {
+				redrawn += c;
+			}
+			sink.write(redrawn.length());
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("  %-22s %,10.0f ns per character (last 100 characters of the line)%n",
+				"boxed list, middle:", elapsed / 100.0);
+	}
+}
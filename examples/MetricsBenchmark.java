@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+
+import com.jmodule.def.Command;
+import com.jmodule.def.CommandMetrics;
+import com.jmodule.def.CommandLogic;
+
+/*
+ * Measures what counting a command run costs: reading the clock before and
+ * after the run, and recording the duration in the command's metrics, on one
+ * thread and on several threads recording into the same metrics at once.
+ * Running a command that does nothing is timed as well, for comparison. The
+ * best of several rounds is printed, in nanoseconds per run, after rounds to
+ * warm up the JIT compiler. The cost of reading the clock twice and recording
+ * is the overhead that counting adds to each run, and should stay under 100 ns.
+ *
+ * Usage: java MetricsBenchmark [threads]
+ */
+
+public class MetricsBenchmark {
+
+	private static final int ROUNDS = 10;
+	private static final int RUNS = 2000000;
+
+	private static long sink = 0;
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0])
+				: Math.max(2, Runtime.getRuntime().availableProcessors());
+
+		double clock = clock();
+		double record = record();
+		System.out.printf("clock read twice:            %8.1f ns%n", clock);
+		System.out.printf("record, 1 thread:            %8.1f ns%n", record);
+		System.out.printf("record, %2d threads:          %8.1f ns%n", threads, recordContended(threads));
+		System.out.printf("run of an empty command:     %8.1f ns%n", run());
+		System.out.printf("overhead per run:            %8.1f ns (limit 100 ns)%n", clock + record);
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	private static double clock() {
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			long sum = 0;
+			for (int i = 0; i < RUNS; i++) {
+				long t = System.nanoTime();
+				sum += System.nanoTime() - t;
+			}
+			best = Math.min(best, System.nanoTime() - start);
+			sink += sum;
+		}
+		return (double) best / RUNS;
+	}
+
+	private static double record() {
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			CommandMetrics metrics = new CommandMetrics();
+			long start = System.nanoTime();
+			for (int i = 0; i < RUNS; i++) {
+				metrics.record(i & 0xffff, false);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+			sink += metrics.getInvocations();
+		}
+		return (double) best / RUNS;
+	}
+
+	/*
+	 * Returns the time each thread takes per record while all threads record
+	 * into the same metrics
+	 */
+	private static double recordContended(int threads) throws InterruptedException {
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			final CommandMetrics metrics = new CommandMetrics();
+			ArrayList<Thread> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				workers.add(new Thread() {
+					@Override
+					public void run() {
+						for (int i = 0; i < RUNS; i++) {
+							metrics.record(i & 0xffff, false);
+						}
+					}
+				});
+			}
+			long start = System.nanoTime();
+			for (Thread worker : workers) {
+				worker.start();
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			best = Math.min(best, System.nanoTime() - start);
+			if (metrics.getInvocations() != (long) threads * RUNS) {
+				throw new IllegalStateException("Lost records: " + metrics.getInvocations());
+			}
+		}
+		// threads that share a processor take turns, so only count the time each
+		// thread could have had to itself
+		int cpus = Math.min(threads, Runtime.getRuntime().availableProcessors());
+		return (double) best * cpus / threads / RUNS;
+	}
+
+	private static double run() {
+		final long[] calls = new long[1];
+		Command command = new Command("noop", "Does nothing", new CommandLogic() {
+			@Override
+			public void execute(String[] args) {
+				calls[0]++;
+			}
+		});
+		String[] args = new String[0];
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < RUNS; i++) {
+				command.run(args);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		sink += calls[0];
+		return (double) best / RUNS;
+	}
+}
@@ -0,0 +1,107 @@
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jmodule.def.Command;
+import com.jmodule.def.CommandLogic;
+import com.jmodule.exec.ConsoleClient;
+import com.jmodule.exec.ConsoleServer;
+import com.jmodule.exec.Module;
+
+/*
+ * Load test for the console server. A server is started on a free local port,
+ * and a number of sessions connect to it at the same time. Once every session
+ * is connected, each one sends its commands and reads the results back. The
+ * number of commands answered per second and per core is printed at the end.
+ *
+ * Usage: java ServerLoadTest [sessions] [commands per session]
+ */
+
+public class ServerLoadTest {
+
+	public static void main(String[] args) throws Exception {
+		final int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		final int commands = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		Module math = new Module("math");
+		math.addCommand(new Command("add", "Adds two numbers", new CommandLogic(new String[] { "a", "b" }) {
+			@Override
+			public void execute(String[] args) {
+				System.out.println("Sum: " + (Integer.parseInt(args[0]) + Integer.parseInt(args[1])));
+			}
+		}));
+		ConsoleClient client = new ConsoleClient("Load", math);
+		ConsoleServer server = new ConsoleServer(client);
+		server.start(0);
+		final int port = server.getPort();
+
+		// build one session's input up front so that sending it is cheap
+		StringBuilder script = new StringBuilder();
+		for (int i = 0; i < commands; i++) {
+			script.append("add ").append(i).append(" 1\n");
+		}
+		script.append("exit\n");
+		final byte[] input = script.toString().getBytes(StandardCharsets.UTF_8);
+
+		final CountDownLatch connected = new CountDownLatch(sessions);
+		final CountDownLatch go = new CountDownLatch(1);
+		final AtomicLong answered = new AtomicLong();
+		Thread[] threads = new Thread[sessions];
+		for (int i = 0; i < sessions; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try (Socket socket = new Socket("localhost", port)) {
+						connected.countDown();
+						go.await();
+						final OutputStream out = socket.getOutputStream();
+						Thread writer = new Thread() {
+							@Override
+							public void run() {
+								try {
+									out.write(input);
+									out.flush();
+								} catch (Exception e) {
+									e.printStackTrace();
+								}
+							}
+						};
+						writer.start();
+						BufferedReader in = new BufferedReader(
+								new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+						String line;
+						while ((line = in.readLine()) != null) {
+							if (line.contains("Sum: ")) {
+								answered.incrementAndGet();
+							}
+						}
+						writer.join();
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		connected.await();
+		System.err.println(sessions + " sessions connected (" + server.getSessionCount() + " open on the server)");
+		long start = System.nanoTime();
+		go.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		server.close();
+
+		long total = answered.get();
+		System.err.printf("%d commands answered in %.3f s%n", total, seconds);
+		System.err.printf("%.0f commands/s, %.0f commands/s per core, %.1f sessions per core%n", total / seconds,
+				total / seconds / cores, (double) sessions / cores);
+	}
+}
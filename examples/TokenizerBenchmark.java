@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+
+import com.jmodule.util.Tokenizer;
+
+/*
+ * Benchmark of splitting input lines into chained commands. Lines of 10, 100
+ * and 1,000 commands chained with ';' are split by the tokenizer into the
+ * reference and arguments of each command, as the client does for every line.
+ * For comparison, the same lines are split the way the client did before it
+ * had a tokenizer: the line is trimmed, runs of spaces are replaced with a
+ * regular expression, the line is split on spaces, and the words are grouped
+ * into commands through two lists. The time per line and per command is
+ * printed.
+ *
+ * Usage: java TokenizerBenchmark
+ */
+
+public class TokenizerBenchmark {
+
+	private static final int ROUNDS = 10;
+	private static final int COMMANDS = 1000000; // commands split per round
+
+	private static long sink = 0;
+
+	public static void main(String[] args) {
+		for (int chained : new int[] { 10, 100, 1000 }) {
+			StringBuilder line = new StringBuilder("  ");
+			for (int i = 0; i < chained; i++) {
+				if (i > 0) {
+					line.append(i % 2 == 0 ? "; " : " ;  ");
+				}
+				line.append("multiply ").append(i).append("  ").append(i * 7).append(" -v --verbose");
+			}
+			String text = line.toString();
+			int lines = COMMANDS / chained;
+			System.out.printf("%,d chained commands, %,d characters per line%n", chained, text.length());
+			print("tokenizer:", tokenizer(text, lines), lines, chained);
+			print("regex and split:", regex(text, lines), lines, chained);
+		}
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	private static void print(String name, long best, int lines, int chained) {
+		System.out.printf("  %-18s %,12.0f ns per line, %,8.0f ns per command%n", name, (double) best / lines,
+				(double) best / lines / chained);
+	}
+
+	private static long tokenizer(String line, int lines) {
+		Tokenizer t = new Tokenizer();
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int n = 0; n < lines; n++) {
+				t.tokenize(line);
+				for (int i = 0; i < t.getCommandCount(); i++) {
+					sink += t.getToken(i, 0).length() + t.getArguments(i).length;
+				}
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private static long regex(String line, int lines) {
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int n = 0; n < lines; n++) {
+				String[] args = line.trim().replaceAll(" +", " ").split(" ");
+				for (String[] exec : chain(args)) {
+					sink += exec[0].length() + exec.length - 1;
+				}
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/*
+	 * Groups words into commands at words ending with ';', as the client used to
+	 */
+	private static ArrayList<String[]> chain(String[] args) {
+		ArrayList<String[]> inputs = new ArrayList<>();
+		ArrayList<String> execList = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			boolean last = i == args.length - 1;
+
+			String arg = args[i];
+			if (!arg.endsWith(";") && !last) {
+				execList.add(arg);
+			} else {
+				arg = !last ? arg.substring(0, arg.length() - 1) : arg;
+				execList.add(arg);
+				String[] exec = new String[execList.size()];
+				for (int j = 0; j < execList.size() && execList.get(j) != null; j++) {
+					exec[j] = execList.get(j);
+				}
+				inputs.add(exec);
+				execList.clear();
+			}
+		}
+		return inputs;
+	}
+}
@@ -0,0 +1,94 @@
+package com.jmodule.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a command whose logic is the annotated class. The class must be a
+ * public, non-abstract subclass of CommandLogic with a public constructor that
+ * takes no arguments, and must not be an inner class. At compile time, the
+ * {@link RegistryProcessor} adds the command to the generated
+ * {@link Registry}, which builds the command without loading the class; the
+ * class is loaded and instantiated the first time the command runs.
+ * <P>
+ * Options and whether the command requires regular input are declared here
+ * rather than set in the logic's constructor. Typed parameters are declared
+ * in the constructor, and their names and types must also be listed in
+ * {@link #params()} and {@link #types()}. The names help and exit, and
+ * references equal to them, are rejected, since they are taken by built-in
+ * commands.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Command {
+
+	/**
+	 * @return name of the command, from which its default reference is made
+	 */
+	String name();
+
+	/**
+	 * @return description shown on the module's help page
+	 */
+	String description() default "";
+
+	/**
+	 * @return name of the module the command belongs to. If empty, the command
+	 *         belongs to the module declared by the {@link Module} annotation of
+	 *         the class it is nested in.
+	 */
+	String module() default "";
+
+	/**
+	 * @return alternate references to the command
+	 */
+	String[] references() default {};
+
+	/**
+	 * @return names of the command's parameters, shown in its usage statement
+	 */
+	String[] params() default {};
+
+	/**
+	 * @return type of each parameter: <code>int.class</code>,
+	 *         <code>long.class</code>, <code>double.class</code>,
+	 *         <code>boolean.class</code>, <code>String.class</code>,
+	 *         <code>Path.class</code> or an enum class, matching the types the
+	 *         logic's constructor declares. If empty, every parameter is a
+	 *         string.
+	 */
+	Class<?>[] types() default {};
+
+	/**
+	 * @return minimum number of parameters, or -1 if the command takes exactly
+	 *         as many parameters as it declares
+	 */
+	int min() default -1;
+
+	/**
+	 * @return maximum number of parameters, or -1 if there is no maximum. Only
+	 *         used if {@link #min()} is set.
+	 */
+	int max() default -1;
+
+	/**
+	 * @return the command's options
+	 */
+	Option[] options() default {};
+
+	/**
+	 * @return <code>true</code> if the terminal must be in regular input mode
+	 *         while the command runs. This is checked before the logic class is
+	 *         loaded, so it must be declared here; calling
+	 *         setRegularInputRequired(true) in the logic's constructor instead
+	 *         makes the command fail when it first runs.
+	 */
+	boolean regularInputRequired() default false;
+}
@@ -0,0 +1,32 @@
+package com.jmodule.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a module of the generated {@link Registry}. Commands nested in the
+ * annotated class belong to the module unless they name another one. Modules
+ * named by commands but not declared are created with no text appended to
+ * their help page.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Module {
+
+	/**
+	 * @return name of the module
+	 */
+	String name();
+
+	/**
+	 * @return text appended to the module's help page
+	 */
+	String helpAppend() default "";
+}
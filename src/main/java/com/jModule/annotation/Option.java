@@ -0,0 +1,33 @@
+package com.jmodule.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an option of a command, in {@link Command#options()}
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({})
+public @interface Option {
+
+	/**
+	 * @return the option's one-character flag, called with a single dash
+	 */
+	char flag();
+
+	/**
+	 * @return description shown in the command's usage statement
+	 */
+	String description();
+
+	/**
+	 * @return references to the option, without their double dash
+	 */
+	String[] references() default {};
+}
@@ -0,0 +1,205 @@
+package com.jmodule.annotation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.jmodule.def.BoundedCommand;
+import com.jmodule.def.IndefiniteCommand;
+import com.jmodule.def.LazyCommandLogic;
+import com.jmodule.exec.Module;
+import com.jmodule.exec.ModuleProvider;
+
+/**
+ * Builds the modules and commands declared with the {@link Command} and
+ * {@link com.jmodule.annotation.Module} annotations of an application. The {@link RegistryProcessor}
+ * generates a subclass of this class at compile time, holding every module,
+ * command, option and usage statement as constant strings, so that no logic
+ * class needs to be loaded to build the commands. Each command's logic is a
+ * {@link LazyCommandLogic}, which loads the annotated class the first time the
+ * command runs.
+ * <P>
+ * Only the position of each module in the data is found when the registry is
+ * created, and a module's commands are built only when it is created with
+ * {@link #createModule(String)}. The processor also registers the generated
+ * registry as a {@link ModuleProvider} service, so a console client can load
+ * its modules with {@link com.jmodule.exec.ConsoleClient#loadModuleProviders()}
+ * and build each one when the user first switches to it.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public abstract class Registry implements ModuleProvider {
+
+	static final char FIELD = '\0';
+	static final char RECORD = '\1';
+	static final char ITEM = '\2';
+	static final String MODULE = "M";
+	static final String COMMAND = "C";
+	static final String OPTION = "O";
+
+	private final String data;
+	private final LinkedHashMap<String, int[]> modules = new LinkedHashMap<>(); // range of each module's records
+
+	/**
+	 * @param chunks
+	 *            The registry's data, split into constants small enough for a
+	 *            class file
+	 */
+	protected Registry(String... chunks) {
+		StringBuilder joined = new StringBuilder();
+		for (String chunk : chunks) {
+			joined.append(chunk);
+		}
+		data = joined.toString();
+
+		int[] last = null;
+		for (int start = 0; start < data.length(); start = data.indexOf(RECORD, start) + 1) {
+			if (data.startsWith(MODULE + FIELD, start)) {
+				if (last != null) {
+					last[1] = start;
+				}
+				int nameStart = start + 2;
+				last = new int[] { start, data.length() };
+				modules.put(data.substring(nameStart, data.indexOf(FIELD, nameStart)), last);
+			}
+		}
+	}
+
+	/**
+	 * @return names of the modules in the registry, in the order they were
+	 *         declared
+	 */
+	@Override
+	public List<String> getModuleNames() {
+		return new ArrayList<>(modules.keySet());
+	}
+
+	/**
+	 * Builds a module and its commands
+	 *
+	 * @param name
+	 *            Name of a module in the registry
+	 * @return a new instance of the module
+	 * @throws IllegalArgumentException
+	 *             if there is no module with the given name
+	 */
+	@Override
+	public Module createModule(String name) {
+		int[] range = modules.get(name.toLowerCase());
+		if (range == null) {
+			throw new IllegalArgumentException("No module named '" + name + "' in the registry");
+		}
+		Module module = null;
+		LazyCommandLogic logic = null;
+		ClassLoader loader = getClass().getClassLoader();
+		for (int start = range[0]; start < range[1];) {
+			int end = data.indexOf(RECORD, start);
+			String[] fields = split(data, start, end, FIELD);
+			start = end + 1;
+
+			if (fields[0].equals(MODULE)) {
+				module = new Module(fields[1]);
+				if (!fields[2].isEmpty()) {
+					module.appendHelpPage(fields[2]);
+				}
+			} else if (fields[0].equals(COMMAND)) {
+				logic = newLogic(fields[1], loader, split(fields[5], ITEM), split(fields[10], ITEM),
+						fields[8].equals("1"));
+				com.jmodule.def.Command command = newCommand(logic, fields[2], fields[3], split(fields[4], ITEM),
+						Integer.parseInt(fields[6]), Integer.parseInt(fields[7]));
+				command.resetUsage(fields[9]);
+				module.addCommand(command);
+			} else if (fields[0].equals(OPTION)) {
+				logic.addOption(newOption(fields[1].charAt(0), fields[2], split(fields[3], ITEM)));
+			}
+		}
+		return module;
+	}
+
+	/**
+	 * Builds every module in the registry
+	 *
+	 * @return a new instance of each module, in the order they were declared
+	 */
+	public List<Module> createModules() {
+		List<Module> created = new ArrayList<>();
+		for (String name : modules.keySet()) {
+			created.add(createModule(name));
+		}
+		return created;
+	}
+
+	static LazyCommandLogic newLogic(String className, ClassLoader loader, String[] params, String[] types,
+			boolean regularInputRequired) {
+		LazyCommandLogic logic = new LazyCommandLogic(className, loader, params.length == 0 ? null : params, types);
+		logic.setRegularInputRequired(regularInputRequired);
+		return logic;
+	}
+
+	/**
+	 * Builds a command the same way at compile time and at run time, so that the
+	 * usage statements worked out at compile time match
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the parameter range is not valid
+	 */
+	static com.jmodule.def.Command newCommand(LazyCommandLogic logic, String name, String description,
+			String[] references, int min, int max) {
+		com.jmodule.def.Command command;
+		if (min < 0) {
+			if (max >= 0) {
+				throw new IllegalArgumentException("A maximum number of parameters requires a minimum");
+			}
+			command = new com.jmodule.def.Command(name, description, logic);
+		} else if (max < 0) {
+			command = min == 0 ? new IndefiniteCommand(name, description, logic)
+					: new BoundedCommand(name, description, logic, min);
+		} else {
+			command = new BoundedCommand(name, description, logic, min, max);
+		}
+		for (String reference : references) {
+			command.addReference(reference);
+		}
+		return command;
+	}
+
+	static com.jmodule.def.Option newOption(char flag, String description, String[] references) {
+		com.jmodule.def.Option option = new com.jmodule.def.Option(flag, description);
+		for (String reference : references) {
+			option.addReference(reference);
+		}
+		return option;
+	}
+
+	/**
+	 * @return the parts of the text between separators, or none if the text is
+	 *         empty
+	 */
+	private static String[] split(String text, char separator) {
+		return split(text, 0, text.length(), separator);
+	}
+
+	/**
+	 * @return the parts of a range of the text between separators, or none if
+	 *         the range is empty
+	 */
+	private static String[] split(String text, int start, int end, char separator) {
+		if (start == end) {
+			return new String[0];
+		}
+		int count = 1;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == separator) {
+				count++;
+			}
+		}
+		String[] parts = new String[count];
+		for (int i = 0; i < count; i++) {
+			int next = i == count - 1 ? end : text.indexOf(separator, start);
+			parts[i] = text.substring(start, next);
+			start = next + 1;
+		}
+		return parts;
+	}
+}
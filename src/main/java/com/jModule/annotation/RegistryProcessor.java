@@ -0,0 +1,425 @@
+package com.jmodule.annotation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.MirroredTypesException;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+import com.jmodule.def.LazyCommandLogic;
+
+/**
+ * Generates a {@link Registry} of the modules and commands declared with the
+ * {@link Command} and {@link Module} annotations. The processor is registered
+ * as a service, so javac runs it whenever JModule is on the class path.
+ * <P>
+ * Every command is built at compile time the same way the registry builds it
+ * at run time, so that parameter ranges, duplicate references and duplicate
+ * options are reported as compile errors, and each command's usage statement is
+ * stored in the registry instead of being built at run time. The registry is
+ * named <code>jmodule.generated.CommandRegistry</code> unless another name is
+ * given with the <code>-Ajmodule.registry=</code> option, and is registered as
+ * a {@link com.jmodule.exec.ModuleProvider} service.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+@SupportedAnnotationTypes({ "com.jmodule.annotation.Command", "com.jmodule.annotation.Module" })
+@SupportedOptions(RegistryProcessor.REGISTRY_OPTION)
+public class RegistryProcessor extends AbstractProcessor {
+
+	/**
+	 * Processor option naming the generated registry class
+	 */
+	public static final String REGISTRY_OPTION = "jmodule.registry";
+
+	/**
+	 * Name of the generated registry class if none is given
+	 */
+	public static final String DEFAULT_REGISTRY = "jmodule.generated.CommandRegistry";
+
+	// characters in each string constant, small enough for a class file at three
+	// bytes per character
+	private static final int CHUNK_SIZE = 16384;
+
+	// references of the commands every module has, which shadow any command or
+	// module with the same reference
+	private static final String[] BUILT_IN_COMMANDS = { "help", "exit" };
+
+	/**
+	 * A module and the records of its commands and options
+	 */
+	private static class ModuleEntry {
+		final com.jmodule.exec.Module module;
+		String helpAppend = "";
+		boolean declared = false;
+		final StringBuilder records = new StringBuilder();
+
+		ModuleEntry(String name) {
+			module = new com.jmodule.exec.Module(name);
+		}
+	}
+
+	private final LinkedHashMap<String, ModuleEntry> modules = new LinkedHashMap<>();
+	private final ArrayList<Element> originating = new ArrayList<>();
+	private boolean generated = false;
+	private boolean failed = false;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+		Set<? extends Element> moduleElements = env.getElementsAnnotatedWith(Module.class);
+		Set<? extends Element> commandElements = env.getElementsAnnotatedWith(Command.class);
+		if (moduleElements.isEmpty() && commandElements.isEmpty()) {
+			return false;
+		}
+		if (generated) {
+			for (Element e : commandElements) {
+				error("Commands cannot be declared in sources generated after the registry", e);
+			}
+			for (Element e : moduleElements) {
+				error("Modules cannot be declared in sources generated after the registry", e);
+			}
+			return true;
+		}
+		for (Element e : moduleElements) {
+			addModule(e);
+		}
+		for (Element e : commandElements) {
+			addCommand(e);
+		}
+		generated = true;
+		if (!failed) {
+			generate();
+		}
+		return true;
+	}
+
+	private void addModule(Element e) {
+		Module annotation = e.getAnnotation(Module.class);
+		String name = annotation.name().toLowerCase(Locale.ROOT);
+		if (name.isEmpty()) {
+			error("Module name cannot be empty", e);
+			return;
+		}
+		if (isBuiltIn(name)) {
+			error("Module name is taken by the built-in '" + name + "' command", e);
+			return;
+		}
+		ModuleEntry entry = getModule(name);
+		if (entry.declared) {
+			error("Duplicate module name: " + name, e);
+			return;
+		}
+		entry.declared = true;
+		entry.helpAppend = annotation.helpAppend();
+		checkText(entry.helpAppend, e);
+		originating.add(e);
+	}
+
+	private void addCommand(Element e) {
+		Command annotation = e.getAnnotation(Command.class);
+		if (!checkLogicClass(e)) {
+			return;
+		}
+		TypeElement type = (TypeElement) e;
+
+		String moduleName = annotation.module().toLowerCase(Locale.ROOT);
+		for (Element outer = e.getEnclosingElement(); moduleName.isEmpty()
+				&& outer instanceof TypeElement; outer = outer.getEnclosingElement()) {
+			Module enclosing = outer.getAnnotation(Module.class);
+			if (enclosing != null) {
+				moduleName = enclosing.name().toLowerCase(Locale.ROOT);
+			}
+		}
+		if (moduleName.isEmpty()) {
+			error("Command must name a module or be nested in a class annotated with @Module", e);
+			return;
+		}
+
+		String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+		checkText(annotation.name(), e);
+		checkText(annotation.description(), e);
+		checkText(annotation.references(), e);
+		checkText(annotation.params(), e);
+		String[] types = getTypeNames(annotation, e);
+		if (types == null) {
+			return;
+		}
+		try {
+			LazyCommandLogic logic = Registry.newLogic(className, null, annotation.params(), types,
+					annotation.regularInputRequired());
+			StringBuilder options = new StringBuilder();
+			for (Option option : annotation.options()) {
+				checkText(option.description(), e);
+				checkText(option.references(), e);
+				logic.addOption(Registry.newOption(option.flag(), option.description(), option.references()));
+				record(options, Registry.OPTION, String.valueOf(option.flag()), option.description(),
+						join(option.references()));
+			}
+			com.jmodule.def.Command command = Registry.newCommand(logic, annotation.name(), annotation.description(),
+					annotation.references(), annotation.min(), annotation.max());
+			ArrayList<String> references = new ArrayList<>(command.getReferences());
+			references.add(0, command.getDefaultReference());
+			for (String reference : references) {
+				if (isBuiltIn(reference)) {
+					error("Command reference is taken by the built-in '" + reference + "' command", e);
+					return;
+				}
+			}
+			ModuleEntry entry = getModule(moduleName);
+			entry.module.addCommand(command);
+			record(entry.records, Registry.COMMAND, className, annotation.name(), annotation.description(),
+					join(annotation.references()), join(annotation.params()), String.valueOf(annotation.min()),
+					String.valueOf(annotation.max()), annotation.regularInputRequired() ? "1" : "0",
+					command.getUsage(), join(types));
+			entry.records.append(options);
+			originating.add(e);
+		} catch (IllegalArgumentException iae) {
+			error(iae.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return the name of the type of each parameter, as read by
+	 *         {@link LazyCommandLogic}, or <code>null</code> if a type is not
+	 *         supported or there are more types than parameters
+	 */
+	private String[] getTypeNames(Command annotation, Element e) {
+		List<? extends TypeMirror> mirrors;
+		try {
+			annotation.types();
+			return new String[0];
+		} catch (MirroredTypesException mte) {
+			mirrors = mte.getTypeMirrors();
+		}
+		if (mirrors.size() > annotation.params().length) {
+			error("Command declares more parameter types than parameters", e);
+			return null;
+		}
+		String[] names = new String[mirrors.size()];
+		for (int i = 0; i < names.length; i++) {
+			TypeMirror type = mirrors.get(i);
+			switch (type.getKind()) {
+			case INT:
+				names[i] = "int";
+				break;
+			case LONG:
+				names[i] = "long";
+				break;
+			case DOUBLE:
+				names[i] = "double";
+				break;
+			case BOOLEAN:
+				names[i] = "boolean";
+				break;
+			case DECLARED:
+				Element element = processingEnv.getTypeUtils().asElement(type);
+				String name = ((TypeElement) element).getQualifiedName().toString();
+				if (element.getKind() == ElementKind.ENUM) {
+					names[i] = LazyCommandLogic.ENUM_PREFIX
+							+ element.getSimpleName().toString().toLowerCase(Locale.ROOT);
+				} else if (name.equals("java.lang.String")) {
+					names[i] = "string";
+				} else if (name.equals("java.nio.file.Path")) {
+					names[i] = "path";
+				}
+				break;
+			default:
+				break;
+			}
+			if (names[i] == null) {
+				error("Parameter types must be int, long, double, boolean, String, Path or enums", e);
+				return null;
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Checks that a class annotated with {@link Command} can be instantiated
+	 * through a public constructor without arguments and extends CommandLogic
+	 */
+	private boolean checkLogicClass(Element e) {
+		if (e.getKind() != ElementKind.CLASS || e.getModifiers().contains(Modifier.ABSTRACT)) {
+			error("@Command must annotate a class that is not abstract", e);
+			return false;
+		}
+		for (Element outer = e; outer instanceof TypeElement; outer = outer.getEnclosingElement()) {
+			if (!outer.getModifiers().contains(Modifier.PUBLIC)) {
+				error("Command logic class and the classes it is nested in must be public", e);
+				return false;
+			}
+			if (outer.getEnclosingElement() instanceof TypeElement
+					&& !outer.getModifiers().contains(Modifier.STATIC)) {
+				error("Command logic class must not be an inner class", e);
+				return false;
+			}
+		}
+		TypeMirror logic = processingEnv.getElementUtils().getTypeElement("com.jmodule.def.CommandLogic").asType();
+		if (!processingEnv.getTypeUtils().isSubtype(e.asType(), logic)) {
+			error("Command logic class must extend com.jmodule.def.CommandLogic", e);
+			return false;
+		}
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(e.getEnclosedElements())) {
+			if (constructor.getModifiers().contains(Modifier.PUBLIC) && constructor.getParameters().isEmpty()) {
+				return true;
+			}
+		}
+		error("Command logic class must have a public constructor without arguments", e);
+		return false;
+	}
+
+	private ModuleEntry getModule(String name) {
+		ModuleEntry entry = modules.get(name);
+		if (entry == null) {
+			entry = new ModuleEntry(name);
+			modules.put(name, entry);
+		}
+		return entry;
+	}
+
+	private void generate() {
+		StringBuilder data = new StringBuilder();
+		for (ModuleEntry entry : modules.values()) {
+			record(data, Registry.MODULE, entry.module.getName(), entry.helpAppend);
+			data.append(entry.records);
+		}
+
+		String registry = processingEnv.getOptions().get(REGISTRY_OPTION);
+		if (registry == null || registry.isEmpty()) {
+			registry = DEFAULT_REGISTRY;
+		}
+		int dot = registry.lastIndexOf('.');
+		Element[] elements = originating.toArray(new Element[originating.size()]);
+		try (Writer out = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+				"META-INF/services/com.jmodule.exec.ModuleProvider", elements).openWriter()) {
+			out.write(registry + "\n");
+		} catch (IOException ioe) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Cannot register registry " + registry + ": " + ioe.getMessage());
+		}
+		try (Writer out = processingEnv.getFiler().createSourceFile(registry, elements).openWriter()) {
+			if (dot >= 0) {
+				out.write("package " + registry.substring(0, dot) + ";\n\n");
+			}
+			out.write("/**\n * Registry of the annotated modules and commands, generated by "
+					+ RegistryProcessor.class.getName() + "\n */\n");
+			out.write("public final class " + registry.substring(dot + 1) + " extends "
+					+ Registry.class.getName() + " {\n\n");
+			out.write("\tpublic " + registry.substring(dot + 1) + "() {\n\t\tsuper(");
+			for (int start = 0; start < data.length(); start += CHUNK_SIZE) {
+				out.write(start == 0 ? "\"" : ",\n\t\t\t\t\"");
+				out.write(escape(data.substring(start, Math.min(data.length(), start + CHUNK_SIZE))));
+				out.write('"');
+			}
+			out.write(");\n\t}\n}\n");
+		} catch (IOException ioe) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Cannot write registry " + registry + ": " + ioe.getMessage());
+		}
+	}
+
+	private static void record(StringBuilder data, String... fields) {
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				data.append(Registry.FIELD);
+			}
+			data.append(fields[i]);
+		}
+		data.append(Registry.RECORD);
+	}
+
+	private static String join(String[] items) {
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < items.length; i++) {
+			if (i > 0) {
+				joined.append(Registry.ITEM);
+			}
+			joined.append(items[i]);
+		}
+		return joined.toString();
+	}
+
+	/**
+	 * @return the text as the contents of a Java string literal
+	 */
+	private static String escape(String text) {
+		StringBuilder escaped = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				escaped.append('\\').append(c);
+			} else if (c == '\n') {
+				escaped.append("\\n");
+			} else if (c == '\r') {
+				escaped.append("\\r");
+			} else if (c == '\t') {
+				escaped.append("\\t");
+			} else if (c < 0x20) {
+				escaped.append(String.format("\\%03o", (int) c));
+			} else if (c > 0x7e) {
+				escaped.append(String.format("\\u%04x", (int) c));
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * Reports an error if text contains one of the characters that separate the
+	 * registry's data
+	 */
+	private void checkText(String text, Element e) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == Registry.FIELD || c == Registry.RECORD || c == Registry.ITEM) {
+				error("Text cannot contain the character \\u000" + (int) c, e);
+				return;
+			}
+		}
+	}
+
+	private void checkText(String[] texts, Element e) {
+		for (String text : texts) {
+			checkText(text, e);
+		}
+	}
+
+	private static boolean isBuiltIn(String reference) {
+		for (String builtIn : BUILT_IN_COMMANDS) {
+			if (builtIn.equals(reference)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void error(String message, Element e) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+		failed = true;
+	}
+}
@@ -14,13 +14,15 @@ import java.util.ArrayList;
  * consult the CommandLogic documentation
  * 
  * @author Pierce Kelaita
- * @version 1.3.1
+ * @version 1.4.0
  *
  */
 public class Command {
 
 	private ArrayList<String> references = new ArrayList<>();
 	private ArrayList<Option> options = new ArrayList<>();
+	private ArrayList<ReferenceListener> listeners = new ArrayList<>();
+	private ArrayList<UsageListener> usageListeners = new ArrayList<>();
 	private String[] params;
 	private String name;
 	private String description;
@@ -28,6 +30,10 @@ public class Command {
 	private String usageAppend;
 	private String usageReset;
 	private CommandLogic logic;
+	private int version = 0;
+	private String usage;
+	private int usageStamp;
+	private final CommandMetrics metrics = new CommandMetrics();
 
 	private int min = -1;
 	private int max = -1;
@@ -56,9 +62,10 @@ public class Command {
 		this.name = name;
 		this.description = description;
 		this.logic = logic;
-		this.defaultReference = name.toLowerCase().replaceAll(" ", "");
+		this.defaultReference = name.toLowerCase().replace(" ", "");
 		this.params = logic.getParams();
 		this.options = logic.getOptions();
+		logic.addOwner(this);
 	}
 
 	public String getName() {
@@ -77,6 +84,25 @@ public class Command {
 		return references;
 	}
 
+	public ArrayList<Option> getOptions() {
+		return options;
+	}
+
+	/**
+	 * @return how often the command has run, failed, and how long it took
+	 */
+	public CommandMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return <code>true</code> if the command's logic reads from the terminal
+	 *         line by line and must be executed in regular input mode
+	 */
+	public boolean requiresRegularInput() {
+		return logic.isRegularInputRequired();
+	}
+
 	protected String getUsageReset() {
 		return usageReset;
 	}
@@ -85,64 +111,129 @@ public class Command {
 		return usageAppend;
 	}
 
-	private boolean activateExistingOption(String reference) {
-		for (Option o : options) {
-			if (o.isReferencedBy(reference)) {
-				o.activate();
-				return true;
-			}
-		}
-		return false;
-	}
-
 	/**
 	 * Adds a possible reference to the command
 	 * 
 	 * @param reference
 	 */
 	public void addReference(String reference) {
+		for (ReferenceListener l : listeners) {
+			l.referenceAdded(this, reference);
+		}
 		references.add(reference);
+		usageChanged();
+	}
+
+	/**
+	 * Registers a listener to be notified of references added to this command
+	 * 
+	 * @param l
+	 *            Listener to add
+	 */
+	public void addReferenceListener(ReferenceListener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * Unregisters a listener added with addReferenceListener
+	 * 
+	 * @param l
+	 *            Listener to remove
+	 */
+	public void removeReferenceListener(ReferenceListener l) {
+		listeners.remove(l);
+	}
+
+	/**
+	 * Registers a listener to be notified whenever the command's usage statement
+	 * changes
+	 * 
+	 * @param l
+	 *            Listener to add
+	 */
+	public void addUsageListener(UsageListener l) {
+		usageListeners.add(l);
+	}
+
+	/**
+	 * Unregisters a listener added with addUsageListener
+	 * 
+	 * @param l
+	 *            Listener to remove
+	 */
+	public void removeUsageListener(UsageListener l) {
+		usageListeners.remove(l);
+	}
+
+	/**
+	 * Counts a change to the usage statement and notifies the usage listeners.
+	 * Also called by the command's logic when its options change.
+	 */
+	void usageChanged() {
+		version++;
+		for (UsageListener l : usageListeners) {
+			l.usageChanged(this);
+		}
 	}
 
 	/**
-	 * Gives the correct usage in a standard, user-friendly format
+	 * @return a number that is incremented whenever the command's usage statement
+	 *         changes
+	 */
+	public int getUsageVersion() {
+		return version;
+	}
+
+	/**
+	 * Gives the correct usage in a standard, user-friendly format. The statement
+	 * is built once and rebuilt only after the command's references, usage info or
+	 * options change.
 	 * 
 	 * @return usage statment
 	 */
-	public String getUsage() {
+	public synchronized String getUsage() {
+		int stamp = getUsageVersion();
+		if (usage == null || stamp != usageStamp) {
+			usage = buildUsage();
+			usageStamp = stamp;
+		}
+		return usage;
+	}
+
+	private String buildUsage() {
 		if (usageReset != null) {
 			return usageReset;
 		}
 
 		// generate standard usage info
-		String usage = "Usage: ~$ " + defaultReference;
+		StringBuilder usage = new StringBuilder("Usage: ~$ ").append(defaultReference);
 		if (params != null) {
 			for (String param : params) {
-				usage += " " + "<" + param + ">";
+				usage.append(" <").append(param).append('>');
 			}
 		}
 		for (String reference : references) {
-			usage += "\n       OR " + reference;
+			usage.append("\n       OR ").append(reference);
 			if (params != null) {
-				usage += " ~";
+				usage.append(" ~");
 			}
 		}
 		if (!options.isEmpty()) {
-			usage += "\nOptions:";
+			usage.append("\nOptions:");
 			for (Option t : options) {
-				usage += "\n\t" + t.getFlag();
+				usage.append("\n\t").append(t.getFlag());
 				for (String reference : t.getReferences()) {
-					usage += ", " + reference;
+					usage.append(", ").append(reference);
 				}
-				usage += ": " + t.getDescription();
+				usage.append(": ").append(t.getDescription());
 			}
 		}
 
 		// append info
 		if (usageAppend != null) {
-			usage += "\n" + usageAppend;
+			usage.append('\n').append(usageAppend);
 		}
-		return usage;
+		return usage.toString();
 	}
 
 	/**
@@ -152,10 +243,11 @@ public class Command {
 	 *            Information to append to usage
 	 */
 	public void appendUsage(String append) {
-		this.usageAppend = this.usageAppend != null ? "\n" + append : append;
+		this.usageAppend = this.usageAppend != null ? this.usageAppend + "\n" + append : append;
 		if (this.usageReset != null) {
 			this.usageReset += "\n" + append;
 		}
+		usageChanged();
 	}
 
 	/**
@@ -167,52 +259,103 @@ public class Command {
 	public void resetUsage(String reset) {
 		this.usageReset = reset;
 		this.usageAppend = null;
+		usageChanged();
 	}
 
 	/**
-	 * Runs the command logic with the given arguments
+	 * Runs the command logic with the given arguments. The options called are
+	 * kept for this invocation only, so a command can be run from several
+	 * threads at once. Arguments are converted to the types of their parameters
+	 * first, and if one cannot be, the error and the command's usage are printed
+	 * instead. An argument in the place of a number parameter that is a number,
+	 * such as {@code -5}, is a parameter rather than an option, and every
+	 * argument after {@code --} is a parameter. Each run is counted in the
+	 * command's metrics.
 	 * 
 	 * @param args
 	 *            Command-line arguments
 	 */
 	public void run(String[] args) {
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			error = !execute(args);
+		} finally {
+			metrics.record(System.nanoTime() - start, error);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the logic was executed, <code>false</code> if
+	 *         the input was rejected
+	 */
+	private boolean execute(String[] args) {
 		ArrayList<String> paramsPassedList = new ArrayList<>();
+		long optionsCalled = 0;
 		boolean illegalOptions = false;
+		boolean optionsEnded = false;
 		for (String arg : args) {
-			if (!arg.equals(";") && arg.length() > 0) { // weird bug fix
-				if (!arg.startsWith("-")) {
-					paramsPassedList.add(arg);
-				} else {
-					if (arg.charAt(1) != '-') {
-						for (int i = 1; i < arg.length(); i++) {
-							if (!activateExistingOption("-" + arg.charAt(i))) {
-								illegalOptions = true;
-							}
-						}
-					} else if (!activateExistingOption(arg)) {
+			if (optionsEnded || arg.length() < 2 || arg.charAt(0) != '-'
+					|| isNumber(arg, paramsPassedList.size())) {
+				paramsPassedList.add(arg);
+			} else if (arg.equals("--")) {
+				optionsEnded = true;
+			} else if (arg.charAt(1) != '-') {
+				for (int i = 1; i < arg.length(); i++) {
+					int index = logic.indexOfFlag(arg.charAt(i));
+					if (index < 0) {
 						illegalOptions = true;
+					} else {
+						optionsCalled |= 1L << index;
 					}
 				}
+			} else {
+				int index = logic.indexOfReference(arg);
+				if (index < 0) {
+					illegalOptions = true;
+				} else {
+					optionsCalled |= 1L << index;
+				}
 			}
 		}
 
-		String[] paramsPassed = new String[paramsPassedList.size()];
-		for (int i = 0; i < paramsPassed.length; i++) {
-			paramsPassed[i] = paramsPassedList.get(i);
-		}
+		String[] paramsPassed = paramsPassedList.toArray(new String[paramsPassedList.size()]);
 
 		int paramNum = params != null ? params.length : 0;
-		boolean illegalDefNum = paramNum != paramsPassedList.size() && !(this instanceof IndefiniteCommand);
-		boolean illegalBoundNum = (paramsPassedList.size() < min || paramsPassedList.size() > max)
+		boolean illegalDefNum = paramNum != paramsPassed.length && !(this instanceof IndefiniteCommand);
+		boolean illegalBoundNum = (paramsPassed.length < min || paramsPassed.length > max)
 				&& this instanceof BoundedCommand;
 
 		if (illegalDefNum || illegalBoundNum || illegalOptions) {
 			System.out.println(getUsage() + "\n");
-		} else {
-			logic.execute(paramsPassed);
+			return false;
+		}
+		ParsedArgs parsed;
+		try {
+			parsed = logic.parse(paramsPassed, optionsCalled);
+		} catch (IllegalArgumentException iae) {
+			System.out.println(iae.getMessage() + "\n" + getUsage() + "\n");
+			return false;
+		}
+		logic.execute(parsed);
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if the argument is a value of the parameter at
+	 *         the given index and that parameter is a number, so that negative
+	 *         numbers are not read as options
+	 */
+	private boolean isNumber(String arg, int index) {
+		ParamType type = logic.getParamType(index);
+		if (type != ParamType.INT && type != ParamType.LONG && type != ParamType.DOUBLE) {
+			return false;
 		}
-		for (Option o : options) {
-			o.reset();
+		try {
+			((ParamType.PrimitiveType) type).toPrimitive(arg);
+			return true;
+		} catch (IllegalArgumentException iae) {
+			return false;
 		}
 	}
-}
\ No newline at end of file
+}
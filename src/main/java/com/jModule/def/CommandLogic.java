@@ -1,6 +1,7 @@
 package com.jmodule.def;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -8,16 +9,31 @@ import java.util.Set;
  * Classes extending this class can define the logic for commands based on user
  * input, if given. You can also define the standard parameters for your command
  * logic. Subclasses of this class are taken as a parameter when instantiating a
- * command
+ * command. Logic that reads its parameters as typed values from the
+ * invocation's {@link ParsedArgs} can extend {@link TypedCommandLogic}
+ * instead.
  * 
  * @author Pierce Kelaita
- * @version 1.3.1
+ * @version 1.4.0
  *
  */
 public abstract class CommandLogic {
 
+	/**
+	 * Maximum number of options a command logic can have
+	 */
+	public static final int MAX_OPTIONS = Long.SIZE;
+
+	private static final ThreadLocal<ParsedArgs> CURRENT_ARGS = new ThreadLocal<>();
+
 	private String[] params;
+	private ParamType[] types; // type of each parameter, or null if every parameter is a string
 	private ArrayList<Option> options = new ArrayList<>();
+	private byte[] asciiFlags = new byte[128]; // index + 1 of the option with each ASCII flag, or 0
+	private HashMap<Character, Integer> otherFlags = new HashMap<>();
+	private HashMap<String, Integer> references = new HashMap<>(); // dashed flags and long references
+	private boolean regularInputRequired = false;
+	private ArrayList<Command> owners = new ArrayList<>();
 
 	public CommandLogic() {
 	}
@@ -26,6 +42,28 @@ public abstract class CommandLogic {
 		this.params = params;
 	}
 
+	/**
+	 * Declares the command's parameters along with their types. Arguments are
+	 * converted to their parameter's type before the logic is executed, and an
+	 * invocation with an argument that cannot be converted is rejected without
+	 * executing the logic. In indefinite and bounded commands, arguments past the
+	 * last parameter have the last parameter's type.
+	 * 
+	 * @param params
+	 *            The command's parameters
+	 */
+	public CommandLogic(Param... params) {
+		this.params = new String[params.length];
+		ParamType[] types = new ParamType[params.length];
+		boolean typed = false;
+		for (int i = 0; i < params.length; i++) {
+			this.params[i] = params[i].getName();
+			types[i] = params[i].getType();
+			typed |= types[i] != ParamType.STRING;
+		}
+		this.types = typed ? types : null;
+	}
+
 	public ArrayList<Option> getOptions() {
 		return options;
 	}
@@ -35,13 +73,138 @@ public abstract class CommandLogic {
 	}
 
 	/**
-	 * Override this method to define the logic for a command.
+	 * @param index
+	 *            Index of an argument
+	 * @return type the argument at the given index is converted to
+	 */
+	public ParamType getParamType(int index) {
+		if (types == null) {
+			return ParamType.STRING;
+		}
+		return types[Math.min(index, types.length - 1)];
+	}
+
+	/**
+	 * Converts the arguments of an invocation to their parameters' types
+	 * 
+	 * @param args
+	 *            Parameters passed to the command
+	 * @param options
+	 *            Bit set of the options called
+	 * @return the invocation's arguments
+	 * @throws IllegalArgumentException
+	 *             if an argument is not a value of its parameter's type
+	 */
+	ParsedArgs parse(String[] args, long options) {
+		if (types == null) {
+			return new ParsedArgs(args, options, this);
+		}
+		long[] values = null;
+		Object[] objects = null;
+		for (int i = 0; i < args.length; i++) {
+			ParamType type = getParamType(i);
+			try {
+				if (type instanceof ParamType.PrimitiveType) {
+					if (values == null) {
+						values = new long[args.length];
+					}
+					values[i] = ((ParamType.PrimitiveType) type).toPrimitive(args[i]);
+				} else if (type != ParamType.STRING) {
+					if (objects == null) {
+						objects = new Object[args.length];
+					}
+					objects[i] = ((ParamType.ObjectType) type).toObject(args[i]);
+				}
+			} catch (IllegalArgumentException iae) {
+				String name = params[Math.min(i, params.length - 1)];
+				throw new IllegalArgumentException("Invalid <" + name + ">: " + iae.getMessage());
+			}
+		}
+		return new ParsedArgs(args, values, objects, options, this);
+	}
+
+	void addOwner(Command owner) {
+		owners.add(owner);
+	}
+
+	/**
+	 * Tells the commands using this logic that their usage has changed, after an
+	 * option is added to this logic or one of its options gains a reference
+	 */
+	void optionChanged() {
+		for (Command owner : owners) {
+			owner.usageChanged();
+		}
+	}
+
+	/**
+	 * Makes a reference added to one of this logic's options resolve to it. A
+	 * reference that already resolves to an earlier option keeps doing so.
+	 * 
+	 * @param option
+	 *            An option of this logic
+	 * @param reference
+	 *            The option's new reference, with its dashes
+	 */
+	void referenceAdded(Option option, String reference) {
+		int index = options.indexOf(option);
+		if (index >= 0 && !references.containsKey(reference)) {
+			references.put(reference, index);
+		}
+		optionChanged();
+	}
+
+	public boolean isRegularInputRequired() {
+		return regularInputRequired;
+	}
+
+	/**
+	 * Sets whether the command reads from the terminal line by line (for example,
+	 * through <code>System.console().readLine()</code>). The console client keeps
+	 * the terminal in raw input mode for the whole session and only switches back
+	 * to regular input mode while executing logic that requires it. This value is
+	 * set to false by default.
+	 * 
+	 * @param required
+	 *            if true, the terminal is in regular input mode during execution
+	 * @return This instance of CommandLogic
+	 */
+	public CommandLogic setRegularInputRequired(boolean required) {
+		this.regularInputRequired = required;
+		return this;
+	}
+
+	/**
+	 * Override this method to define the logic for a command
 	 * 
 	 * @param args
 	 *            Command-line arguments
 	 */
 	public abstract void execute(String[] args);
 
+	/**
+	 * Executes the logic for a single invocation of a command. This calls
+	 * {@link #execute(String[])} with the invocation's parameters, and
+	 * {@link #onOption(char)} reports the options of this invocation for the
+	 * duration of the call.
+	 * 
+	 * @param args
+	 *            Parameters and options of this invocation
+	 */
+	public void execute(ParsedArgs args) {
+		ParsedArgs previous = CURRENT_ARGS.get();
+		CURRENT_ARGS.set(args);
+		try {
+			execute(args.getParams());
+		} finally {
+			if (previous == null) {
+				CURRENT_ARGS.remove();
+			} else {
+				CURRENT_ARGS.set(previous);
+			}
+		}
+	}
+
 	/**
 	 * Use this method in an if-statement as such: <blockquote>
 	 * 
@@ -70,24 +233,77 @@ public abstract class CommandLogic {
 	 *         flag or one of its references, <code>false</code> otherwise.
 	 */
 	public boolean onOption(char flag) {
-		for (Option o : getOptions()) {
-			if (o.isCalled(flag)) {
-				return true;
+		ParsedArgs args = CURRENT_ARGS.get();
+		return args != null && args.getLogic() == this && args.onOption(flag);
+	}
+
+	/**
+	 * Finds an option by its flag with a lookup in a table indexed by the flag,
+	 * or in a hash map for flags outside of ASCII
+	 * 
+	 * @param flag
+	 *            The option's one-character reference
+	 * @return index of the option with the given flag, or -1 if there is none
+	 */
+	int indexOfFlag(char flag) {
+		if (flag < asciiFlags.length) {
+			return asciiFlags[flag] - 1;
+		}
+		Integer index = otherFlags.get(flag);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param reference
+	 *            An option's flag with its dash, or one of its references
+	 * @return index of the option referenced, or -1 if there is none
+	 */
+	int indexOfReference(String reference) {
+		Integer index = references.get(reference);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Adds the flag and references of the option at the given index to the lookup
+	 * tables
+	 */
+	private void compile(int index) {
+		Option option = options.get(index);
+		char flag = option.getFlag().charAt(1);
+		if (flag < asciiFlags.length) {
+			asciiFlags[flag] = (byte) (index + 1);
+		} else {
+			otherFlags.put(flag, index);
+		}
+		references.put(option.getFlag(), index);
+		for (String reference : option.getReferences()) {
+			if (!references.containsKey(reference)) {
+				references.put(reference, index);
 			}
 		}
-		return false;
 	}
 
 	/**
-	 * Adds a possible option to the command.
+	 * Adds a possible option to the command. The option's flag and references are
+	 * added to lookup tables, so that finding the option an argument refers to
+	 * takes constant time however many options there are.
 	 * 
 	 * @param t
 	 *            Default flag to call the option
 	 * @return This instance of CommandLogic
+	 * @throws IllegalArgumentException
+	 *             if the option shares a reference with another option, or if the
+	 *             logic already has {@link #MAX_OPTIONS} options
 	 */
 	public CommandLogic addOption(Option t) {
+		if (options.size() >= MAX_OPTIONS) {
+			throw new IllegalArgumentException("Command logic cannot have more than " + MAX_OPTIONS + " options");
+		}
 		if (options.isEmpty()) {
 			options.add(t);
+			t.addOwner(this);
+			compile(0);
+			optionChanged();
 			return this;
 		}
 		Set<Option> temp = new HashSet<Option>();
@@ -100,7 +316,10 @@ public abstract class CommandLogic {
 		}
 		for (Option tog : temp) {
 			options.add(tog);
+			tog.addOwner(this);
+			compile(options.size() - 1);
 		}
+		optionChanged();
 		return this;
 	}
 }
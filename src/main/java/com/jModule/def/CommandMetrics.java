@@ -0,0 +1,57 @@
+package com.jmodule.def;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.jmodule.util.LatencyHistogram;
+
+/**
+ * Counts how often a command runs, how often it fails, and how long it takes.
+ * A run fails if its input is rejected, for example for the wrong number of
+ * parameters or a parameter of the wrong type, or if its logic throws an
+ * exception. Counting takes no lock, so a command can be counted from several
+ * threads at once.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public final class CommandMetrics {
+
+	private final LongAdder errors = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * Counts a run
+	 * 
+	 * @param nanos
+	 *            How long the run took, in nanoseconds
+	 * @param error
+	 *            if true, the run failed
+	 */
+	public void record(long nanos, boolean error) {
+		latency.record(nanos);
+		if (error) {
+			errors.increment();
+		}
+	}
+
+	/**
+	 * @return number of runs counted
+	 */
+	public long getInvocations() {
+		return latency.getCount();
+	}
+
+	/**
+	 * @return number of runs that failed
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * @return distribution of how long the runs took
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+}
@@ -0,0 +1,172 @@
+package com.jmodule.def;
+
+/**
+ * Command logic that stands in for a logic class until the command first runs,
+ * so that building a command does not load its class. On the first invocation,
+ * the class is loaded and instantiated through its public constructor that
+ * takes no arguments, this logic's options are added to it, and every
+ * invocation is then passed on to it, including the conversion of its
+ * parameters if it declares their types.
+ * <P>
+ * The options of a command with lazy logic are added to this logic, and the
+ * logic class must not add options of its own. Whether the command requires
+ * regular input and the types of its parameters are also read from this logic,
+ * since they are checked before the class is loaded, so the logic class must
+ * not require regular input unless this logic does, and must declare the same
+ * parameter types.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public final class LazyCommandLogic extends CommandLogic {
+
+	/**
+	 * Prefix of the type name of an enum parameter, which is followed by the
+	 * name of the enum's {@link ParamType}
+	 */
+	public static final String ENUM_PREFIX = "enum:";
+
+	private final String className;
+	private final ClassLoader loader;
+	private final String[] typeNames; // name of each parameter's type, or null if every parameter is a string
+	private volatile CommandLogic target;
+
+	/**
+	 * @param className
+	 *            Binary name of a subclass of CommandLogic
+	 * @param loader
+	 *            Class loader to load the class with
+	 * @param params
+	 *            Names of the command's parameters
+	 */
+	public LazyCommandLogic(String className, ClassLoader loader, String[] params) {
+		this(className, loader, params, null);
+	}
+
+	/**
+	 * @param className
+	 *            Binary name of a subclass of CommandLogic
+	 * @param loader
+	 *            Class loader to load the class with
+	 * @param params
+	 *            Names of the command's parameters
+	 * @param typeNames
+	 *            Name of the type of each parameter, such as "int" or "path",
+	 *            with enum types named by {@link #ENUM_PREFIX} and the name of
+	 *            their type, or <code>null</code> if every parameter is a string
+	 */
+	public LazyCommandLogic(String className, ClassLoader loader, String[] params, String[] typeNames) {
+		super(params);
+		this.className = className;
+		this.loader = loader;
+		this.typeNames = typeNames == null || typeNames.length == 0 ? null : typeNames;
+	}
+
+	/**
+	 * @return binary name of the logic class
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * @return <code>true</code> if the logic class has been loaded and
+	 *         instantiated
+	 */
+	public boolean isLoaded() {
+		return target != null;
+	}
+
+	/**
+	 * Loads and instantiates the logic class, if it has not been already
+	 *
+	 * @return the logic this logic stands in for
+	 * @throws IllegalStateException
+	 *             if the class cannot be loaded or instantiated, is not a
+	 *             subclass of CommandLogic, adds options of its own, requires
+	 *             regular input when this logic does not or declares other
+	 *             parameter types than this logic
+	 */
+	public CommandLogic getTarget() {
+		CommandLogic t = target;
+		if (t != null) {
+			return t;
+		}
+		synchronized (this) {
+			if (target == null) {
+				target = load();
+			}
+			return target;
+		}
+	}
+
+	private CommandLogic load() {
+		CommandLogic t;
+		try {
+			Class<?> c = Class.forName(className, true, loader);
+			t = c.asSubclass(CommandLogic.class).getConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+			throw new IllegalStateException("Cannot instantiate command logic " + className, e);
+		}
+		if (!t.getOptions().isEmpty()) {
+			throw new IllegalStateException(
+					"Command logic " + className + " must declare its options in its annotation");
+		}
+		if (t.isRegularInputRequired() && !isRegularInputRequired()) {
+			throw new IllegalStateException(
+					"Command logic " + className + " must declare that it requires regular input in its annotation");
+		}
+		int count = Math.max(getParams() == null ? 0 : getParams().length,
+				t.getParams() == null ? 0 : t.getParams().length);
+		for (int i = 0; i < Math.max(count, 1); i++) {
+			if (!getTypeName(i).equals(getTypeName(t.getParamType(i)))) {
+				throw new IllegalStateException("Command logic " + className
+						+ " must declare the types of its parameters in its annotation");
+			}
+		}
+		for (Option option : getOptions()) {
+			t.addOption(option);
+		}
+		return t;
+	}
+
+	/**
+	 * @return name of the type of the argument at the given index, as given to
+	 *         the constructor
+	 */
+	private String getTypeName(int index) {
+		return typeNames == null ? ParamType.STRING.getName() : typeNames[Math.min(index, typeNames.length - 1)];
+	}
+
+	private static String getTypeName(ParamType type) {
+		return ParamType.forName(type.getName()) == type ? type.getName() : ENUM_PREFIX + type.getName();
+	}
+
+	/**
+	 * Finds the type of an argument without loading the logic class, unless it
+	 * is an enum type
+	 */
+	@Override
+	public ParamType getParamType(int index) {
+		String name = getTypeName(index);
+		if (name.startsWith(ENUM_PREFIX)) {
+			return getTarget().getParamType(index);
+		}
+		return ParamType.forName(name);
+	}
+
+	@Override
+	ParsedArgs parse(String[] args, long options) {
+		return getTarget().parse(args, options);
+	}
+
+	@Override
+	public void execute(String[] args) {
+		getTarget().execute(args);
+	}
+
+	@Override
+	public void execute(ParsedArgs args) {
+		getTarget().execute(args);
+	}
+}
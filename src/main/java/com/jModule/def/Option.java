@@ -9,19 +9,18 @@ import java.util.ArrayList;
  * 
  * 
  * @author Pierce Kelaita
- * @version 1.3.1
+ * @version 1.4.0
  */
 public class Option {
 
 	private String flag;
 	private String description;
-	private boolean active;
 	private ArrayList<String> refs = new ArrayList<>();
+	private ArrayList<CommandLogic> owners = new ArrayList<>();
 
 	public Option(char flag, String description) {
 		this.flag = "-" + flag;
 		this.description = description;
-		active = false;
 	}
 
 	public ArrayList<String> getReferences() {
@@ -36,26 +35,8 @@ public class Option {
 		return description;
 	}
 
-	protected boolean isCalled(char flag) {
-		return flag == this.flag.charAt(1) && active;
-	}
-
-	protected boolean isReferencedBy(String arg) {
-		if (arg.equals(flag)) {
-			return true;
-		}
-		if (refs.contains(arg)) {
-			return true;
-		}
-		return false;
-	}
-
-	protected void activate() {
-		active = true;
-	}
-
-	protected void reset() {
-		active = false;
+	void addOwner(CommandLogic owner) {
+		owners.add(owner);
 	}
 
 	protected String equals(Option t) {
@@ -80,6 +61,9 @@ public class Option {
 	 */
 	public Option addReference(String reference) {
 		refs.add("--" + reference);
+		for (CommandLogic owner : owners) {
+			owner.referenceAdded(this, "--" + reference);
+		}
 		return this;
 	}
 
@@ -0,0 +1,37 @@
+package com.jmodule.def;
+
+/**
+ * A typed parameter of a command, made of the name shown in the command's
+ * usage statement and the type its argument is converted to. Parameters are
+ * declared by passing them to the CommandLogic constructor.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public final class Param {
+
+	private final String name;
+	private final ParamType type;
+
+	/**
+	 * @param name
+	 *            Name shown in the command's usage statement
+	 * @param type
+	 *            Type the argument is converted to
+	 */
+	public Param(String name, ParamType type) {
+		if (name == null || type == null) {
+			throw new IllegalArgumentException("A parameter must have a name and a type");
+		}
+		this.name = name;
+		this.type = type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ParamType getType() {
+		return type;
+	}
+}
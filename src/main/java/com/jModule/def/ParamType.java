@@ -0,0 +1,213 @@
+package com.jmodule.def;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * The type of a parameter, which converts the text the user passed into a
+ * value before the command's logic is executed. Integers, longs, doubles and
+ * booleans are converted to primitives and stored without boxing; other types
+ * are converted to objects. Enum types are made with {@link #enumOf(Class)},
+ * which looks up the constants in a table built once for each type.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public abstract class ParamType {
+
+	/**
+	 * A 32-bit integer, read with {@link ParsedArgs#getInt(int)}
+	 */
+	public static final ParamType INT = new PrimitiveType("int") {
+		@Override
+		long toPrimitive(String arg) {
+			try {
+				return Integer.parseInt(arg);
+			} catch (NumberFormatException nfe) {
+				throw new IllegalArgumentException("'" + arg + "' is not an integer");
+			}
+		}
+	};
+
+	/**
+	 * A 64-bit integer, read with {@link ParsedArgs#getLong(int)}
+	 */
+	public static final ParamType LONG = new PrimitiveType("long") {
+		@Override
+		long toPrimitive(String arg) {
+			try {
+				return Long.parseLong(arg);
+			} catch (NumberFormatException nfe) {
+				throw new IllegalArgumentException("'" + arg + "' is not an integer");
+			}
+		}
+	};
+
+	/**
+	 * A finite floating-point number, read with {@link ParsedArgs#getDouble(int)}
+	 */
+	public static final ParamType DOUBLE = new PrimitiveType("double") {
+		@Override
+		long toPrimitive(String arg) {
+			double value;
+			try {
+				value = Double.parseDouble(arg);
+			} catch (NumberFormatException nfe) {
+				value = Double.NaN;
+			}
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				throw new IllegalArgumentException("'" + arg + "' is not a number");
+			}
+			return Double.doubleToRawLongBits(value);
+		}
+	};
+
+	/**
+	 * "true", "false", "yes" or "no" in any case, read with
+	 * {@link ParsedArgs#getBoolean(int)}
+	 */
+	public static final ParamType BOOLEAN = new PrimitiveType("boolean") {
+		@Override
+		long toPrimitive(String arg) {
+			if (arg.equalsIgnoreCase("true") || arg.equalsIgnoreCase("yes")) {
+				return 1;
+			} else if (arg.equalsIgnoreCase("false") || arg.equalsIgnoreCase("no")) {
+				return 0;
+			}
+			throw new IllegalArgumentException("'" + arg + "' is not true or false");
+		}
+	};
+
+	/**
+	 * Any text, read with {@link ParsedArgs#get(int)}. This is the type of the
+	 * parameters of logic constructed with parameter names only.
+	 */
+	public static final ParamType STRING = new ObjectType("string") {
+		@Override
+		Object toObject(String arg) {
+			return arg;
+		}
+	};
+
+	/**
+	 * A file system path, read with {@link ParsedArgs#getPath(int)}
+	 */
+	public static final ParamType PATH = new ObjectType("path") {
+		@Override
+		Object toObject(String arg) {
+			try {
+				return Paths.get(arg);
+			} catch (InvalidPathException ipe) {
+				throw new IllegalArgumentException("'" + arg + "' is not a valid path");
+			}
+		}
+	};
+
+	private final String name;
+
+	private ParamType(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Makes the type of a parameter that names one of the constants of an enum,
+	 * in any case, read with {@link ParsedArgs#getEnum(int, Class)}
+	 *
+	 * @param type
+	 *            Enum class
+	 * @return parameter type for the enum
+	 * @throws IllegalArgumentException
+	 *             if the enum has no constants, or two constants differ only in
+	 *             case
+	 */
+	public static <E extends Enum<E>> ParamType enumOf(Class<E> type) {
+		E[] constants = type.getEnumConstants();
+		if (constants == null || constants.length == 0) {
+			throw new IllegalArgumentException(type.getName() + " has no constants");
+		}
+		final HashMap<String, E> byName = new HashMap<>();
+		final StringBuilder choices = new StringBuilder();
+		for (E constant : constants) {
+			String key = constant.name().toLowerCase(Locale.ROOT);
+			if (byName.put(key, constant) != null) {
+				throw new IllegalArgumentException("Constants of " + type.getName() + " differ only in case: " + key);
+			}
+			choices.append(choices.length() == 0 ? "" : ", ").append(key);
+		}
+		return new ObjectType(type.getSimpleName().toLowerCase(Locale.ROOT)) {
+			@Override
+			Object toObject(String arg) {
+				E constant = byName.get(arg.toLowerCase(Locale.ROOT));
+				if (constant == null) {
+					throw new IllegalArgumentException("'" + arg + "' is not one of " + choices);
+				}
+				return constant;
+			}
+		};
+	}
+
+	/**
+	 * @param name
+	 *            Name of a type
+	 * @return the type other than an enum type with the given name, or
+	 *         <code>null</code> if there is none
+	 */
+	static ParamType forName(String name) {
+		for (ParamType type : new ParamType[] { INT, LONG, DOUBLE, BOOLEAN, STRING, PATH }) {
+			if (type.name.equals(name)) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return name of the type, for example "int" or "path"
+	 */
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * A type whose values are stored as primitives
+	 */
+	abstract static class PrimitiveType extends ParamType {
+
+		PrimitiveType(String name) {
+			super(name);
+		}
+
+		/**
+		 * Converts an argument to its value, with doubles stored as their bits
+		 *
+		 * @throws IllegalArgumentException
+		 *             if the argument is not a value of this type
+		 */
+		abstract long toPrimitive(String arg);
+	}
+
+	/**
+	 * A type whose values are stored as objects
+	 */
+	abstract static class ObjectType extends ParamType {
+
+		ObjectType(String name) {
+			super(name);
+		}
+
+		/**
+		 * Converts an argument to its value
+		 *
+		 * @throws IllegalArgumentException
+		 *             if the argument is not a value of this type
+		 */
+		abstract Object toObject(String arg);
+	}
+}
@@ -0,0 +1,191 @@
+package com.jmodule.def;
+
+import java.nio.file.Path;
+
+/**
+ * Holds the arguments of a single invocation of a command: the parameters
+ * passed by the user and the options they called. Instances are immutable and
+ * created for every invocation, so the same command can be executed from
+ * several threads at once.
+ * <P>
+ * Parameters declared with a type are converted before the command is
+ * executed, and read with the accessor for their type, such as
+ * {@link #getInt(int)}. Numbers and booleans are kept as primitives, so reading
+ * them does not box or parse anything.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public final class ParsedArgs {
+
+	private final String[] params;
+	private final long[] values; // primitive value of each parameter, doubles as their bits
+	private final Object[] objects; // value of each parameter of another type
+	private final long options;
+	private final CommandLogic logic;
+
+	/**
+	 * @param params
+	 *            Parameters passed to the command
+	 * @param options
+	 *            Bit set of the options called, where bit <code>i</code> stands
+	 *            for the option at index <code>i</code> in the logic's options
+	 * @param logic
+	 *            Logic the arguments were parsed for
+	 */
+	ParsedArgs(String[] params, long options, CommandLogic logic) {
+		this(params, null, null, options, logic);
+	}
+
+	/**
+	 * @param params
+	 *            Parameters passed to the command
+	 * @param values
+	 *            Values of the parameters of primitive types, or
+	 *            <code>null</code> if there are none
+	 * @param objects
+	 *            Values of the parameters of other types except strings, or
+	 *            <code>null</code> if there are none
+	 * @param options
+	 *            Bit set of the options called
+	 * @param logic
+	 *            Logic the arguments were parsed for
+	 */
+	ParsedArgs(String[] params, long[] values, Object[] objects, long options, CommandLogic logic) {
+		this.params = params;
+		this.values = values;
+		this.objects = objects;
+		this.options = options;
+		this.logic = logic;
+	}
+
+	CommandLogic getLogic() {
+		return logic;
+	}
+
+	/**
+	 * @return a copy of the parameters passed to the command
+	 */
+	public String[] getParams() {
+		return params.clone();
+	}
+
+	/**
+	 * @param index
+	 *            Index of a parameter
+	 * @return the parameter at the given index
+	 */
+	public String get(int index) {
+		return params[index];
+	}
+
+	/**
+	 * @param index
+	 *            Index of a parameter of type {@link ParamType#INT}
+	 * @return the parameter's value
+	 * @throws IllegalArgumentException
+	 *             if the parameter is of another type
+	 */
+	public int getInt(int index) {
+		checkType(index, ParamType.INT);
+		return (int) values[index];
+	}
+
+	/**
+	 * @param index
+	 *            Index of a parameter of type {@link ParamType#LONG} or
+	 *            {@link ParamType#INT}
+	 * @return the parameter's value
+	 * @throws IllegalArgumentException
+	 *             if the parameter is of another type
+	 */
+	public long getLong(int index) {
+		if (logic.getParamType(index) != ParamType.INT) {
+			checkType(index, ParamType.LONG);
+		}
+		return values[index];
+	}
+
+	/**
+	 * @param index
+	 *            Index of a parameter of type {@link ParamType#DOUBLE}
+	 * @return the parameter's value
+	 * @throws IllegalArgumentException
+	 *             if the parameter is of another type
+	 */
+	public double getDouble(int index) {
+		checkType(index, ParamType.DOUBLE);
+		return Double.longBitsToDouble(values[index]);
+	}
+
+	/**
+	 * @param index
+	 *            Index of a parameter of type {@link ParamType#BOOLEAN}
+	 * @return the parameter's value
+	 * @throws IllegalArgumentException
+	 *             if the parameter is of another type
+	 */
+	public boolean getBoolean(int index) {
+		checkType(index, ParamType.BOOLEAN);
+		return values[index] != 0;
+	}
+
+	/**
+	 * @param index
+	 *            Index of a parameter of type {@link ParamType#PATH}
+	 * @return the parameter's value
+	 * @throws IllegalArgumentException
+	 *             if the parameter is of another type
+	 */
+	public Path getPath(int index) {
+		checkType(index, ParamType.PATH);
+		return (Path) objects[index];
+	}
+
+	/**
+	 * @param index
+	 *            Index of a parameter of a type made with
+	 *            {@link ParamType#enumOf(Class)}
+	 * @param type
+	 *            The parameter's enum class
+	 * @return the parameter's value
+	 * @throws IllegalArgumentException
+	 *             if the parameter is not of the given enum type
+	 */
+	public <E extends Enum<E>> E getEnum(int index, Class<E> type) {
+		Object value = objects == null ? null : objects[index];
+		if (!type.isInstance(value)) {
+			throw new IllegalArgumentException("Parameter " + index + " is of type " + logic.getParamType(index)
+					+ ", not " + type.getSimpleName());
+		}
+		return type.cast(value);
+	}
+
+	private void checkType(int index, ParamType type) {
+		if (index < 0 || index >= params.length) {
+			throw new IndexOutOfBoundsException("Parameter " + index + " out of range for " + params.length);
+		}
+		ParamType actual = logic.getParamType(index);
+		if (actual != type) {
+			throw new IllegalArgumentException("Parameter " + index + " is of type " + actual + ", not " + type);
+		}
+	}
+
+	/**
+	 * @return number of parameters passed to the command
+	 */
+	public int size() {
+		return params.length;
+	}
+
+	/**
+	 * @param flag
+	 *            The option's one-character reference (Example: "-a" or "-b")
+	 * @return <code>true</code> if the option exists and is called either by its
+	 *         flag or one of its references, <code>false</code> otherwise.
+	 */
+	public boolean onOption(char flag) {
+		int index = logic.indexOfFlag(flag);
+		return index >= 0 && (options & (1L << index)) != 0;
+	}
+}
@@ -0,0 +1,23 @@
+package com.jmodule.def;
+
+/**
+ * Receives a callback whenever a reference is added to a command. Modules use
+ * this to keep their reference index up to date with commands that gain
+ * references after they are added to the module.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public interface ReferenceListener {
+
+	/**
+	 * Called before the reference is added to the command. Throwing an exception
+	 * prevents the reference from being added.
+	 *
+	 * @param command
+	 *            command the reference is being added to
+	 * @param reference
+	 *            the new reference
+	 */
+	void referenceAdded(Command command, String reference);
+}
@@ -0,0 +1,55 @@
+package com.jmodule.def;
+
+/**
+ * Command logic that receives each invocation's parameters, converted to their
+ * types, together with the options called in {@link #execute(ParsedArgs)},
+ * instead of reading strings in {@link #execute(String[])} and checking
+ * options with {@link #onOption(char)}. Because the invocation is passed as an
+ * argument, the logic can hand it on to other threads.
+ * 
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public abstract class TypedCommandLogic extends CommandLogic {
+
+	public TypedCommandLogic() {
+	}
+
+	public TypedCommandLogic(String[] params) {
+		super(params);
+	}
+
+	/**
+	 * Declares the command's parameters along with their types, which are read
+	 * from the invocation with the accessor for each type
+	 * 
+	 * @param params
+	 *            The command's parameters
+	 */
+	public TypedCommandLogic(Param... params) {
+		super(params);
+	}
+
+	/**
+	 * Override this method to define the logic for a command
+	 * 
+	 * @param args
+	 *            Parameters and options of this invocation
+	 */
+	@Override
+	public abstract void execute(ParsedArgs args);
+
+	/**
+	 * Converts the arguments to their parameters' types and executes the logic
+	 * with no options called
+	 * 
+	 * @param args
+	 *            Command-line arguments
+	 * @throws IllegalArgumentException
+	 *             if an argument is not a value of its parameter's type
+	 */
+	@Override
+	public final void execute(String[] args) {
+		execute(parse(args, 0));
+	}
+}
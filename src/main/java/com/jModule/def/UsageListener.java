@@ -0,0 +1,20 @@
+package com.jmodule.def;
+
+/**
+ * Receives a callback whenever a command's usage statement changes, including
+ * changes to the options of its logic. Modules use this to know when their
+ * help page must be built again.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public interface UsageListener {
+
+	/**
+	 * Called after the command's usage statement has changed
+	 *
+	 * @param command
+	 *            command whose usage changed
+	 */
+	void usageChanged(Command command);
+}
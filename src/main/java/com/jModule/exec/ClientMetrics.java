@@ -0,0 +1,77 @@
+package com.jmodule.exec;
+
+import com.jmodule.def.Command;
+import com.jmodule.def.CommandMetrics;
+
+/**
+ * Reads the statistics of a console client for JMX. Commands are only looked
+ * up in modules that have been built, so reading the statistics never builds a
+ * module.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class ClientMetrics implements ClientMetricsMBean {
+
+	private final ConsoleClient client;
+
+	ClientMetrics(ConsoleClient client) {
+		this.client = client;
+	}
+
+	@Override
+	public long getInputCount() {
+		return client.getInputMetrics().getInvocations();
+	}
+
+	@Override
+	public long getUnrecognizedInputCount() {
+		return client.getInputMetrics().getErrors();
+	}
+
+	@Override
+	public double getMeanInputLatency() {
+		return client.getInputMetrics().getLatency().getMean() / 1e3;
+	}
+
+	@Override
+	public double getInputLatencyP99() {
+		return client.getInputMetrics().getLatency().getPercentile(99) / 1e3;
+	}
+
+	@Override
+	public String getReport() {
+		return client.getStatsReport();
+	}
+
+	@Override
+	public long getInvocations(String module, String command) {
+		return getMetrics(module, command).getInvocations();
+	}
+
+	@Override
+	public long getErrors(String module, String command) {
+		return getMetrics(module, command).getErrors();
+	}
+
+	@Override
+	public double getLatencyPercentile(String module, String command, double percentile) {
+		return getMetrics(module, command).getLatency().getPercentile(percentile) / 1e3;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the module has not been built or has no such command
+	 */
+	private CommandMetrics getMetrics(String module, String command) {
+		Module m = client.getLoadedModule(module.toLowerCase());
+		if (m == null) {
+			throw new IllegalArgumentException("Module '" + module + "' is not loaded");
+		}
+		Command cmd = m.getCommand(command);
+		if (cmd == null) {
+			throw new IllegalArgumentException("Module '" + module + "' has no command '" + command + "'");
+		}
+		return cmd.getMetrics();
+	}
+}
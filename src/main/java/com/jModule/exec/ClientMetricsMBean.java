@@ -0,0 +1,67 @@
+package com.jmodule.exec;
+
+/**
+ * Management interface through which the statistics of a console client are
+ * read over JMX, once registered with {@link ConsoleClient#registerMBean()}.
+ * Durations are in microseconds.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public interface ClientMetricsMBean {
+
+	/**
+	 * @return number of commands, module switches and built-in commands entered
+	 */
+	long getInputCount();
+
+	/**
+	 * @return number of inputs that did not name a command, module or built-in
+	 *         command
+	 */
+	long getUnrecognizedInputCount();
+
+	/**
+	 * @return average time taken to process an input
+	 */
+	double getMeanInputLatency();
+
+	/**
+	 * @return time that 99 percent of inputs were processed within
+	 */
+	double getInputLatencyP99();
+
+	/**
+	 * @return the table printed by the 'stats' command
+	 */
+	String getReport();
+
+	/**
+	 * @param module
+	 *            Name of a module that has been built
+	 * @param command
+	 *            Reference to a command of the module
+	 * @return number of times the command has run
+	 */
+	long getInvocations(String module, String command);
+
+	/**
+	 * @param module
+	 *            Name of a module that has been built
+	 * @param command
+	 *            Reference to a command of the module
+	 * @return number of times the command has failed
+	 */
+	long getErrors(String module, String command);
+
+	/**
+	 * @param module
+	 *            Name of a module that has been built
+	 * @param command
+	 *            Reference to a command of the module
+	 * @param percentile
+	 *            Percentage between 0 and 100
+	 * @return time that the given percentage of the command's runs took at most
+	 */
+	double getLatencyPercentile(String module, String command, double percentile);
+}
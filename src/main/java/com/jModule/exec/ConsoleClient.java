@@ -1,31 +1,105 @@
 package com.jmodule.exec;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import com.jmodule.def.Command;
+import com.jmodule.def.CommandMetrics;
+import com.jmodule.def.Option;
+import com.jmodule.util.Completer;
+import com.jmodule.util.CompletionIndex;
+import com.jmodule.util.FuzzyMatcher;
 import com.jmodule.util.ConsoleUtil;
-import com.jmodule.util.InputUtil;
+import com.jmodule.util.HistoryStore;
+import com.jmodule.util.LatencyHistogram;
+import com.jmodule.util.LineEditor;
+import com.jmodule.util.RoutedOutputStream;
+import com.jmodule.util.TerminalWriter;
+import com.jmodule.util.Tokenizer;
 
 /**
  * Builds and runs a multi-module command line interface.
  * 
- * Please note: This class takes user input by toggling the console between raw
- * input and regular input mode. As of version 1.0.2, this client only
+ * Please note: This class takes user input by keeping the console in raw input
+ * mode for the whole session, switching to regular input mode only while
+ * executing commands that require it. As of version 1.0.2, this client only
  * officially supports *nix terminals. The client has not yet been tested on
  * windows terminals.
  * 
  * @author Pierce Kelaita
- * @version 1.3.1
+ * @version 1.4.0
  *
  */
 public class ConsoleClient {
 
+	private static class HelpPage {
+		final String text;
+		final int helpVersion;
+		final int modulesVersion;
+
+		HelpPage(String text, int helpVersion, int modulesVersion) {
+			this.text = text;
+			this.helpVersion = helpVersion;
+			this.modulesVersion = modulesVersion;
+		}
+	}
+
+	/**
+	 * How a single input was handled: run, not found, or started as a background
+	 * job that is counted in the input metrics when it finishes
+	 */
+	private enum Dispatch {
+		DONE, NOT_FOUND, BACKGROUND
+	}
+
+	private static final String[] ASYNC_COMMANDS = { "jobs", "wait", "cancel" };
+
 	private Module home;
 	private String appname;
-	private ArrayList<Module> modules = new ArrayList<>();
+	private LinkedHashMap<String, Module> modules = new LinkedHashMap<>(); // null for provided modules not loaded
+	private HashMap<String, ModuleProvider> providers = new HashMap<>();
+	private LinkedHashMap<String, Integer> loadedModules = new LinkedHashMap<>(16, 0.75f, true); // LRU first
+	private int loadedCommands = 0;
+	private int moduleBudget = Integer.MAX_VALUE;
 	private ArrayList<Thread> shutdownHooks = new ArrayList<>();
+	private boolean shutdownHooksInstalled = false;
+	private CompletionIndex moduleNames = new CompletionIndex();
+	private ConcurrentHashMap<Module, HelpPage> helpPages = new ConcurrentHashMap<>();
+	private volatile int modulesVersion = 0;
+	private RoutedOutputStream output = null;
+	private LineEditor editor = new LineEditor();
+	private HistoryStore history = null;
+	private ConcurrentHashMap<Module, FuzzyCompletions> fuzzyCompletions = new ConcurrentHashMap<>();
+	private final CommandMetrics inputMetrics = new CommandMetrics();
+	private volatile long scriptNanos = 0;
+	private ScheduledExecutorService statsDump = null;
+	private volatile Path statsDumpFile = null;
 
 	// default values
 	private String promptSeparator = "$";
@@ -33,6 +107,31 @@ public class ConsoleClient {
 	private String promptName = null;
 	private boolean historyEnabled = false;
 	private boolean historyIndexDisplay = false;
+	private boolean tabCompletionEnabled = false;
+	private boolean alertsEnabled = false;
+	private volatile boolean asyncEnabled = false;
+	private boolean fuzzyCompletionEnabled = false;
+	private volatile boolean statsEnabled = false;
+	private volatile boolean scriptReportEnabled = false;
+
+	private static final int FUZZY_COMPLETIONS = 50;
+	private static final int RECENT_ENTRIES = 100;
+
+	/**
+	 * Matcher for the words that can be completed at the start of a command in a
+	 * module, and the version of the module and client it was built for
+	 */
+	private static final class FuzzyCompletions {
+		final int helpVersion;
+		final int modulesVersion;
+		final FuzzyMatcher matcher;
+
+		FuzzyCompletions(int helpVersion, int modulesVersion, FuzzyMatcher matcher) {
+			this.helpVersion = helpVersion;
+			this.modulesVersion = modulesVersion;
+			this.matcher = matcher;
+		}
+	}
 
 	/**
 	 * Sets the name of the app and the starting module
@@ -46,7 +145,12 @@ public class ConsoleClient {
 	public ConsoleClient(String appname, Module homeModule) {
 		this.appname = appname;
 		this.home = homeModule;
-		modules.add(homeModule);
+		modules.put(homeModule.getName(), homeModule);
+		moduleNames.add(homeModule.getName());
+	}
+
+	Module getHome() {
+		return home;
 	}
 
 	/**
@@ -103,7 +207,27 @@ public class ConsoleClient {
 	 */
 	public void enableHistoryLogging(boolean enabled) {
 		this.historyEnabled = enabled;
-		InputUtil.setHistoryEnabled(enabled);
+		editor.setHistoryEnabled(enabled);
+	}
+
+	/**
+	 * Enables history logging, keeping up to the given number of the most recent
+	 * commands. If a file is given, history is saved to it as commands are entered
+	 * and loaded from it the next time the application starts, so that the user
+	 * can go back to the commands of earlier runs. Without this, up to
+	 * {@value HistoryStore#DEFAULT_MAX_SIZE} commands are kept in memory.
+	 * 
+	 * @param file
+	 *            File to save history to, or null to keep history in memory only
+	 * @param maxSize
+	 *            Maximum number of commands kept
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is not positive
+	 */
+	public void enableHistoryLogging(Path file, int maxSize) {
+		this.history = new HistoryStore(maxSize, file);
+		editor.setHistory(history);
+		enableHistoryLogging(true);
 	}
 
 	/**
@@ -131,7 +255,24 @@ public class ConsoleClient {
 	 *            if true, client will log command history
 	 */
 	public void enableTabCompletion(boolean enabled) {
-		InputUtil.setTabCompletionEnabled(enabled);
+		this.tabCompletionEnabled = enabled;
+		editor.setTabCompletionEnabled(enabled);
+	}
+
+	/**
+	 * Sets whether tab completion of commands matches the characters typed in
+	 * order anywhere in a reference, rather than only at its start, so that for
+	 * example 'gco' completes to 'git-commit'. Matches are ranked by how closely
+	 * the characters typed follow each other and start words in the reference, and
+	 * by how recently the command was used, and the best 50 are cycled through
+	 * with the tab key. Option references are still completed by prefix. This
+	 * value is set to false by default.
+	 * 
+	 * @param enabled
+	 *            if true, commands are completed by fuzzy matching
+	 */
+	public void enableFuzzyCompletion(boolean enabled) {
+		this.fuzzyCompletionEnabled = enabled;
 	}
 
 	/**
@@ -143,7 +284,232 @@ public class ConsoleClient {
 	 *            if true, client will trigger system alerts
 	 */
 	public void enableAlerts(boolean enabled) {
-		InputUtil.setAlertsEnabled(enabled);
+		this.alertsEnabled = enabled;
+		editor.setAlertsEnabled(enabled);
+	}
+
+	/**
+	 * Sets whether commands can be run in the background. When enabled, a command
+	 * ended with '&' runs on its own thread while the user keeps typing, and each
+	 * line it prints is shown above the prompt with the job's id in front of it.
+	 * The built-in commands 'jobs', 'wait' and 'cancel' list, wait for and cancel
+	 * background commands. This value is set to false by default.
+	 * <P>
+	 * Background commands run on virtual threads when the Java runtime supports
+	 * them. Commands that require regular input mode cannot run in the
+	 * background.
+	 * 
+	 * @param enabled
+	 *            if true, commands can be run in the background
+	 */
+	public synchronized void enableAsyncExecution(boolean enabled) {
+		if (enabled == asyncEnabled) {
+			return;
+		}
+		asyncEnabled = enabled;
+		modulesVersion++;
+		if (enabled) {
+			getOutput();
+		}
+	}
+
+	/**
+	 * Sets whether the built-in command 'stats' is available. It prints how many
+	 * times each command of the loaded modules has run and failed, and how long
+	 * it took on average, at the median, at the 99th percentile and at most,
+	 * followed by the same for every line of input. Runs are counted whether or
+	 * not the command is available. This value is set to false by default.
+	 * 
+	 * @param enabled
+	 *            if true, the 'stats' command is available
+	 */
+	public synchronized void enableStatsCommand(boolean enabled) {
+		if (enabled == statsEnabled) {
+			return;
+		}
+		statsEnabled = enabled;
+		modulesVersion++;
+	}
+
+	/**
+	 * Sets whether {@link #runScript(Path)} and {@link #runStream(InputStream)}
+	 * report on standard error how many commands they ran and how many commands
+	 * per second that was. This value is set to false by default.
+	 * 
+	 * @param enabled
+	 *            if true, script runs report their throughput
+	 */
+	public void enableScriptReport(boolean enabled) {
+		scriptReportEnabled = enabled;
+	}
+
+	/**
+	 * @return how often input has been processed, how often it did not name a
+	 *         command, module or built-in command, and how long processing it
+	 *         took
+	 */
+	public CommandMetrics getInputMetrics() {
+		return inputMetrics;
+	}
+
+	/**
+	 * Returns a table of how many times each command of the loaded modules has
+	 * run and failed and how long it took, followed by the same for every line
+	 * of input. Commands that have not run are left out. This is what the 'stats'
+	 * command prints.
+	 * 
+	 * @return statistics of the commands run
+	 */
+	public String getStatsReport() {
+		ArrayList<Module> loaded = new ArrayList<>();
+		synchronized (this) {
+			for (Module m : modules.values()) {
+				if (m != null) {
+					loaded.add(m);
+				}
+			}
+		}
+		StringBuilder report = new StringBuilder(String.format("%-28s %10s %8s %9s %9s %9s %9s%n", "COMMAND",
+				"RUNS", "ERRORS", "MEAN", "P50", "P99", "MAX"));
+		for (Module m : loaded) {
+			for (Command c : m.getCommands()) {
+				if (c.getMetrics().getInvocations() > 0) {
+					String name = loaded.size() > 1 ? m.getName() + "/" + c.getDefaultReference()
+							: c.getDefaultReference();
+					appendStats(report, name, c.getMetrics());
+				}
+			}
+		}
+		appendStats(report, "(all input)", inputMetrics);
+		return report.toString();
+	}
+
+	/**
+	 * @return the module with the given name if it has been built, or null,
+	 *         without building it
+	 */
+	synchronized Module getLoadedModule(String name) {
+		return modules.get(name);
+	}
+
+	private static void appendStats(StringBuilder report, String name, CommandMetrics metrics) {
+		LatencyHistogram latency = metrics.getLatency();
+		report.append(String.format("%-28s %10d %8d %9s %9s %9s %9s%n", name, metrics.getInvocations(),
+				metrics.getErrors(), formatNanos(latency.getMean()), formatNanos(latency.getPercentile(50)),
+				formatNanos(latency.getPercentile(99)), formatNanos(latency.getMax())));
+	}
+
+	private static String formatNanos(double nanos) {
+		if (nanos < 1e3) {
+			return String.format("%.0fns", nanos);
+		} else if (nanos < 1e6) {
+			return String.format("%.1fus", nanos / 1e3);
+		} else if (nanos < 1e9) {
+			return String.format("%.1fms", nanos / 1e6);
+		}
+		return String.format("%.2fs", nanos / 1e9);
+	}
+
+	/**
+	 * Registers an MBean with the platform MBean server that reports the
+	 * client's statistics, named
+	 * <code>com.jmodule:type=ConsoleClient,name="appname"</code>, so that they
+	 * can be watched with tools such as JConsole
+	 * 
+	 * @throws IllegalStateException
+	 *             if the MBean cannot be registered, for example because another
+	 *             client with the same name has registered one
+	 */
+	public void registerMBean() {
+		try {
+			ObjectName name = new ObjectName("com.jmodule:type=ConsoleClient,name=" + ObjectName.quote(appname));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new ClientMetrics(this), name);
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register MBean for " + appname, e);
+		}
+	}
+
+	/**
+	 * Writes the statistics of the client to a file periodically, replacing the
+	 * file each time, and once more when the application exits
+	 * 
+	 * @param file
+	 *            File to write the statistics to, or null to stop writing them
+	 * @param periodSeconds
+	 *            Seconds between writes
+	 * @throws IllegalArgumentException
+	 *             if the period is less than a second
+	 */
+	public synchronized void setStatsDumpFile(final Path file, long periodSeconds) {
+		if (statsDump != null) {
+			statsDump.shutdownNow();
+			statsDump = null;
+		}
+		statsDumpFile = file;
+		if (file == null) {
+			return;
+		}
+		if (periodSeconds < 1) {
+			throw new IllegalArgumentException("Period must be at least a second: " + periodSeconds);
+		}
+		statsDump = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "jmodule-stats-dump");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		statsDump.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				dumpStats(file);
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Writes the statistics to a temporary file and moves it over the given
+	 * file, so that readers never see a partly written file
+	 */
+	private void dumpStats(Path file) {
+		try {
+			Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+			Files.write(temp, getStatsReport().getBytes(StandardCharsets.UTF_8));
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns the stream that routes the output of background, parallel and
+	 * remote commands, installing it as <code>System.out</code> the first time it
+	 * is needed.
+	 * 
+	 * @return routed output stream
+	 */
+	synchronized RoutedOutputStream getOutput() {
+		if (output == null) {
+			output = new RoutedOutputStream(System.out, editor);
+			System.setOut(new PrintStream(output, true));
+		}
+		return output;
+	}
+
+	/**
+	 * Returns the table that a session's background and parallel commands are run
+	 * with, creating it the first time it is needed.
+	 * 
+	 * @param s
+	 *            Current session
+	 * @return job table of the session
+	 */
+	private JobTable getJobTable(Session s) {
+		if (s.getJobTable() == null) {
+			s.setJobTable(new JobTable(getOutput()));
+		}
+		return s.getJobTable();
 	}
 
 	/**
@@ -157,6 +523,35 @@ public class ConsoleClient {
 		this.promptName = name;
 	}
 
+	/**
+	 * Sets the editor that the console reads user input with and prints the
+	 * prompt to. By default, each client has its own editor for the terminal the
+	 * application runs in. An editor created with streams can be used to run the
+	 * console over any pair of streams, for example from a test harness. The
+	 * client's history, tab completion and alert settings are applied to the
+	 * editor, along with the history store set up by
+	 * {@link #enableHistoryLogging(Path, int)}.
+	 * 
+	 * @param editor
+	 *            Line editor to use
+	 */
+	public void setLineEditor(LineEditor editor) {
+		editor.setHistoryEnabled(historyEnabled);
+		editor.setTabCompletionEnabled(tabCompletionEnabled);
+		editor.setAlertsEnabled(alertsEnabled);
+		if (history != null) {
+			editor.setHistory(history);
+		}
+		this.editor = editor;
+	}
+
+	/**
+	 * @return the editor that the console reads user input with
+	 */
+	public LineEditor getLineEditor() {
+		return editor;
+	}
+
 	/**
 	 * Adds a proccess to run when the app shuts down. Define your proccess by
 	 * overriding the method run() in java.lang.Thread.
@@ -169,193 +564,664 @@ public class ConsoleClient {
 	}
 
 	/**
-	 * Returns a CLI prompt showing the app name and module name and takes in user
-	 * input using the input utility class.
+	 * Returns a CLI prompt showing the app name and the session's module name
 	 * 
-	 * @param m
-	 *            Current module
-	 * @return user-given arguments
+	 * @param s
+	 *            Current session
+	 * @return prompt for the session
 	 */
-	private String getPrompt(Module m) {
+	String getPrompt(Session s) {
+		Module m = s.getModule();
 		String standPrompt = promptName == null ? appname.replaceAll(" +", "") : promptName;
 
-		if (modules.size() > 1) {
+		if (getModuleCount() > 1) {
 			standPrompt += moduleSeparator + m.getName();
 		}
 
 		String sep = promptSeparator;
 		if (historyIndexDisplay) {
-			sep = " " + InputUtil.getHistory().size() + sep;
+			sep = " " + s.getHistory().size() + sep;
 		}
 		standPrompt += sep + " ";
 
 		return standPrompt;
 	}
 
+	/**
+	 * Returns a completer for the tab key that completes command references and
+	 * the names of other modules at the start of each command in a chain, and the
+	 * long references of the command's options after a double dash.
+	 * 
+	 * @param m
+	 *            Current module
+	 * @param history
+	 *            Session's history, used to rank fuzzy completions
+	 * @return completer for the current module
+	 */
+	private Completer getCompleter(final Module m, final List<String> history) {
+		return new Completer() {
+			@Override
+			public void complete(String text, int wordStart, List<String> candidates) {
+				int commandStart = wordStart;
+				while (commandStart > 0 && !endsCommand(text, commandStart - 1)) {
+					commandStart--;
+				}
+				String before = text.substring(commandStart, wordStart).trim();
+				String word = text.substring(wordStart);
+
+				if (before.isEmpty() && fuzzyCompletionEnabled) {
+					FuzzyMatcher matcher = getFuzzyMatcher(m);
+					List<String> recent = getRecentCommands(history);
+					synchronized (matcher) { // shared by the sessions in the module
+						matcher.setRecent(recent);
+						matcher.complete(word, FUZZY_COMPLETIONS, candidates);
+					}
+					return;
+				}
+				if (before.isEmpty()) {
+					m.getCompletions().complete(word, candidates);
+					if (asyncEnabled) {
+						for (String builtin : ASYNC_COMMANDS) {
+							if (builtin.startsWith(word)) {
+								candidates.add(builtin);
+							}
+						}
+					}
+					if (statsEnabled && "stats".startsWith(word)) {
+						candidates.add("stats");
+					}
+					int commands = candidates.size();
+					completeModuleName(word, candidates);
+					for (int i = commands; i < candidates.size(); i++) {
+						if (candidates.get(i).equals(m.getName())) {
+							candidates.remove(i);
+							break;
+						}
+					}
+					return;
+				}
+
+				if (word.startsWith("--")) {
+					int space = before.indexOf(' ');
+					Command cmd = m.getCommand(space == -1 ? before : before.substring(0, space));
+					if (cmd == null) {
+						return;
+					}
+					for (Option o : cmd.getOptions()) {
+						for (String reference : o.getReferences()) {
+							if (reference.startsWith(word)) {
+								candidates.add(reference);
+							}
+						}
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the fuzzy matcher for the words that can be completed at the start
+	 * of a command in a module, building it again if the module's commands or the
+	 * client's modules have changed since it was built
+	 * 
+	 * @param m
+	 *            Current module
+	 * @return fuzzy matcher for the module
+	 */
+	private FuzzyMatcher getFuzzyMatcher(Module m) {
+		int helpVersion = m.getHelpVersion();
+		int clientVersion = modulesVersion;
+		FuzzyCompletions cached = fuzzyCompletions.get(m);
+		if (cached != null && cached.helpVersion == helpVersion && cached.modulesVersion == clientVersion) {
+			return cached.matcher;
+		}
+		ArrayList<String> words = new ArrayList<>();
+		m.getCompletions().complete("", words);
+		if (asyncEnabled) {
+			words.addAll(Arrays.asList(ASYNC_COMMANDS));
+		}
+		if (statsEnabled) {
+			words.add("stats");
+		}
+		for (String name : getModuleNames()) {
+			if (!name.equals(m.getName())) {
+				words.add(name);
+			}
+		}
+		FuzzyMatcher matcher = new FuzzyMatcher(words);
+		synchronized (this) {
+			if (isResident(m)) {
+				fuzzyCompletions.put(m, new FuzzyCompletions(helpVersion, clientVersion, matcher));
+			}
+		}
+		return matcher;
+	}
+
+	/**
+	 * @return <code>true</code> if the character at the given index is a
+	 *         <code>;</code>, or a <code>&amp;</code> followed by a space, a
+	 *         <code>;</code> or the end of the text, so that it may end a
+	 *         command
+	 */
+	private static boolean endsCommand(String text, int index) {
+		char c = text.charAt(index);
+		if (c == ';') {
+			return true;
+		}
+		if (c != '&') {
+			return false;
+		}
+		char next = index + 1 < text.length() ? text.charAt(index + 1) : ' ';
+		return next == ' ' || next == '\t' || next == ';';
+	}
+
+	/**
+	 * Finds the commands used in the most recent lines of a history, most recent
+	 * first
+	 * 
+	 * @param history
+	 *            history of the session, most recent first
+	 * @return first word of each command in the last {@value #RECENT_ENTRIES}
+	 *         lines
+	 */
+	private static List<String> getRecentCommands(List<String> history) {
+		ArrayList<String> recent = new ArrayList<>();
+		int entries = history == null ? 0 : Math.min(history.size(), RECENT_ENTRIES);
+		for (int i = 0; i < entries; i++) {
+			String entry = history.get(i);
+			int start = 0;
+			while (start < entry.length()) {
+				int end = start;
+				while (end < entry.length() && !endsCommand(entry, end)) {
+					end++;
+				}
+				String command = entry.substring(start, end).trim();
+				int space = command.indexOf(' ');
+				if (!command.isEmpty()) {
+					recent.add(space == -1 ? command : command.substring(0, space));
+				}
+				start = end + 1;
+			}
+		}
+		return recent;
+	}
+
 	/**
 	 * Prints a help page specific to a module. Help pages also reference other
-	 * modules in the console client.
+	 * modules in the console client. Each page is generated once and regenerated
+	 * only after the module, its commands or the client's modules change.
 	 * 
 	 * @param m
 	 *            the module that the help page is specific to
+	 * @param out
+	 *            writer to print the help page with
+	 * @throws IOException
 	 */
-	private void printHelpMessage(Module m) {
+	private void printHelpMessage(Module m, TerminalWriter out) throws IOException {
+		out.println(getHelpMessage(m));
+		out.flush();
+	}
+
+	private String getHelpMessage(Module m) {
+		int helpVersion = m.getHelpVersion();
+		int clientVersion = modulesVersion;
+		HelpPage page = helpPages.get(m);
+		if (page == null || page.helpVersion != helpVersion || page.modulesVersion != clientVersion) {
+			page = new HelpPage(buildHelpMessage(m), helpVersion, clientVersion);
+			synchronized (this) {
+				if (isResident(m)) {
+					helpPages.put(m, page);
+				}
+			}
+		}
+		return page.text;
+	}
+
+	private String buildHelpMessage(Module m) {
 
 		if (m.getHelpReset() != null) {
-			System.out.println(m.getHelpReset());
-			return;
+			return m.getHelpReset();
 		}
 
 		// generate standard help message
-		String message = "\n";
-		message += modules.size() == 1 ? appname.toUpperCase() : m.getName().toUpperCase();
-		message += " -- POSSIBLE COMMANDS";
+		List<String> names = getModuleNames();
+		StringBuilder message = new StringBuilder("\n");
+		message.append(names.size() == 1 ? appname.toUpperCase() : m.getName().toUpperCase());
+		message.append(" -- POSSIBLE COMMANDS");
 		for (Command c : m.getCommands()) {
-			message += "\n'" + c.getDefaultReference() + "'";
-			message += "\n\t" + c.getDescription();
-			message += "\n\t" + c.getUsage().replaceAll("\n", "\n\t");
-		}
-		String str = modules.size() > 1 ? "current module" : "application";
-		message += "\n'help'";
-		message += "\n\t" + "Displays the help page for the " + str;
-		message += "\n\tUsage: ~$ help\n";
-		if (modules.size() > 1) {
-			message += "\nType the name of another module to switch to that module:";
-			for (Module other : modules) {
-				if (!other.equals(m)) {
-					message += "\n\t- " + "'" + other.getName() + "'";
+			message.append("\n'").append(c.getDefaultReference()).append('\'');
+			message.append("\n\t").append(c.getDescription());
+			message.append("\n\t");
+			String usage = c.getUsage();
+			for (int i = 0; i < usage.length(); i++) {
+				char ch = usage.charAt(i);
+				message.append(ch);
+				if (ch == '\n') {
+					message.append('\t');
 				}
 			}
 		}
-		message += "\n\nType 'exit' at any time to exit the program";
-		message += "\n";
+		String str = names.size() > 1 ? "current module" : "application";
+		message.append("\n'help'");
+		message.append("\n\t").append("Displays the help page for the ").append(str);
+		message.append("\n\tUsage: ~$ help\n");
+		if (asyncEnabled) {
+			message.append("'jobs'");
+			message.append("\n\tLists the commands running in the background");
+			message.append("\n\tUsage: ~$ jobs\n");
+			message.append("'wait'");
+			message.append("\n\tWaits for background commands to finish, or for all of them if no ids are given");
+			message.append("\n\tUsage: ~$ wait <job ids>\n");
+			message.append("'cancel'");
+			message.append("\n\tCancels background commands");
+			message.append("\n\tUsage: ~$ cancel <job ids>\n");
+		}
+		if (statsEnabled) {
+			message.append("'stats'");
+			message.append("\n\tShows how often each command has run and failed, and how long it took");
+			message.append("\n\tUsage: ~$ stats\n");
+		}
+		if (asyncEnabled) {
+			message.append("\nEnd a command with '&' to run it in the background");
+		}
+		if (names.size() > 1) {
+			message.append("\nType the name of another module to switch to that module:");
+			for (String other : names) {
+				if (!other.equals(m.getName())) {
+					message.append("\n\t- '").append(other).append('\'');
+				}
+			}
+		}
+		message.append("\n\nType 'exit' at any time to exit the program");
+		message.append('\n');
 
 		// append message
 		if (m.getHelpAppend() != null) {
-			message += m.getHelpAppend() + "\n";
+			message.append(m.getHelpAppend()).append('\n');
 		}
-		System.out.println(message);
+		return message.toString();
 	}
 
 	/**
-	 * Entry point for user input after being parsed by InputUtil. Checks if
-	 * commands are chained and executes accordingly.
+	 * Entry point for user input after being split by the session's tokenizer.
+	 * Executes each chained command in order, running commands joined with '&&&'
+	 * in parallel.
 	 * 
-	 * @param m
-	 *            Current module
-	 * @param args
-	 *            All arguments on the current line
-	 * @return Output module of final argument
+	 * @param s
+	 *            Current session
+	 * @param t
+	 *            Tokenizer holding all commands on the current line
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	private Module processUserInput(Module m, String[] args) throws IOException, InterruptedException {
+	private void processUserInput(Session s, Tokenizer t) throws IOException, InterruptedException {
+		for (int i = 0; i < t.getCommandCount() && !s.isExitRequested(); i++) {
+			if (!t.isParallel(i)) {
+				processSingleInput(s, t.getToken(i, 0), t.getArguments(i), t.isBackground(i));
+				continue;
+			}
+			int end = i + 1;
+			while (t.isParallel(end)) {
+				end++;
+			}
+			processParallelInput(s, t, i, end);
+			i = end;
+		}
+	}
 
-		ArrayList<String[]> inputs = new ArrayList<>();
-		ArrayList<String> execList = new ArrayList<>();
-		for (int i = 0; i < args.length; i++) {
-			boolean last = i == args.length - 1;
+	/**
+	 * Runs a group of commands joined with '&&&' at the same time. References to
+	 * modules, 'help' and unknown commands are resolved one after another before
+	 * anything runs, so each command runs in the module the user would be in if
+	 * the group were run in order. The output of each command is captured and
+	 * printed in the order the commands were given, as soon as it and the output
+	 * before it are ready. Commands that require regular input mode, and 'exit',
+	 * cannot run in a parallel group. Each command in the group is counted in the
+	 * input metrics, timed from the start of the group until it is resolved or
+	 * has finished running.
+	 * 
+	 * @param s
+	 *            Current session
+	 * @param t
+	 *            Tokenizer holding all commands on the current line
+	 * @param first
+	 *            index of the first command in the group
+	 * @param last
+	 *            index of the last command in the group
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void processParallelInput(Session s, Tokenizer t, int first, int last)
+			throws IOException, InterruptedException {
+		Module m = s.getModule();
+		TerminalWriter out = s.getWriter();
+		ArrayList<Object> results = new ArrayList<>(); // Strings or Futures of Strings
+		final long start = System.nanoTime();
 
-			String arg = args[i];
-			if (!arg.endsWith(";") && !last) {
-				execList.add(arg);
+		for (int i = first; i <= last; i++) {
+			String reference = t.getToken(i, 0);
+			s.countCommand();
+			if (reference.equals("help")) {
+				results.add(getHelpMessage(m) + "\n");
+				inputMetrics.record(System.nanoTime() - start, false);
+				continue;
+			}
+			if (statsEnabled && reference.equals("stats")) {
+				results.add(getStatsReport() + "\n");
+				inputMetrics.record(System.nanoTime() - start, false);
+				continue;
+			}
+			if (reference.equals("exit") || asyncEnabled && Arrays.asList(ASYNC_COMMANDS).contains(reference)) {
+				results.add("Command '" + reference + "' cannot run in parallel.\n\n");
+				inputMetrics.record(System.nanoTime() - start, false);
+				continue;
+			}
+			Module switchTo = reference.equals(m.getName()) ? null : getModule(reference);
+			if (switchTo != null) {
+				m = switchTo;
+				results.add("Switched to module '" + m.getName() + "'\n\n");
+				inputMetrics.record(System.nanoTime() - start, false);
+				continue;
+			}
+			final Command cmd = m.getCommand(reference);
+			if (cmd == null) {
+				results.add("Command '" + reference + "' not recognized. Use the 'help' command for details on usage.\n\n");
+				inputMetrics.record(System.nanoTime() - start, true);
+			} else if (cmd.requiresRegularInput()) {
+				results.add("Command '" + reference + "' reads from the console and cannot run in parallel.\n\n");
+				inputMetrics.record(System.nanoTime() - start, false);
 			} else {
-				arg = !last ? arg.substring(0, arg.length() - 1) : arg;
-				execList.add(arg);
-				String[] exec = new String[execList.size()];
-				for (int j = 0; j < execList.size() && execList.get(j) != null; j++) {
-					exec[j] = execList.get(j);
-				}
-				inputs.add(exec);
-				execList.clear();
+				final String[] args = t.getArguments(i);
+				results.add(getJobTable(s).runCaptured(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							cmd.run(args);
+						} finally {
+							inputMetrics.record(System.nanoTime() - start, false);
+						}
+					}
+				}));
 			}
 		}
+		s.setModule(m);
 
-		for (String[] exec : inputs) {
-			m = processSingleInput(m, exec);
+		for (Object result : results) {
+			if (result instanceof Future) {
+				try {
+					out.print((String) ((Future<?>) result).get());
+				} catch (ExecutionException e) {
+					// runCaptured reports failures in its output, so this is not expected
+					out.print("Failed (" + e.getCause() + ")\n\n");
+				}
+			} else {
+				out.print((String) result);
+			}
+			out.flush();
 		}
-
-		return m;
 	}
 
 	/**
-	 * Processes a single element of a chain of commands with respect to the current
-	 * module.
+	 * Processes a single element of a chain of commands with respect to the
+	 * session's current module, and counts it in the input metrics. Input that
+	 * does not name a command, module or built-in command counts as an error. A
+	 * command run in the background is counted when its job finishes.
 	 * 
-	 * @param m
-	 *            Current module
+	 * @param s
+	 *            Current session
+	 * @param reference
+	 *            Reference to a command or module
 	 * @param args
-	 *            Arguments in single element of chain
-	 * @return Output module
+	 *            Arguments following the reference
+	 * @param background
+	 *            if true, the command is run in the background when async execution
+	 *            is enabled
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	private Module processSingleInput(Module m, String[] args) throws IOException, InterruptedException {
+	private void processSingleInput(Session s, String reference, String[] args, boolean background)
+			throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		Dispatch result = Dispatch.NOT_FOUND;
+		try {
+			result = dispatchSingleInput(s, reference, args, background, start);
+		} finally {
+			if (result != Dispatch.BACKGROUND) {
+				inputMetrics.record(System.nanoTime() - start, result == Dispatch.NOT_FOUND);
+			}
+		}
+	}
+
+	/**
+	 * @param start
+	 *            time processing the input started, from
+	 *            {@link System#nanoTime()}
+	 * @return how the input was handled
+	 */
+	private Dispatch dispatchSingleInput(Session s, String reference, String[] args, boolean background,
+			long start) throws IOException, InterruptedException {
 
-		String reference = args[0];
+		Module m = s.getModule();
+		TerminalWriter out = s.getWriter();
 
 		// command-universal operations
 		switch (reference) {
-		case "":
-			return m;
 		case "help":
-			printHelpMessage(m);
-			return m;
+			s.countCommand();
+			printHelpMessage(m, out);
+			return Dispatch.DONE;
 		case "exit":
-			ConsoleUtil.setTerminalRegularInput();
-			System.exit(0);
-		}
-
-		for (Module switchTo : modules) {
-			if (reference.equals(switchTo.getName()) && !reference.equals(m.getName())) {
-				System.out.println("Switched to module '" + switchTo.getName() + "'\n");
-				return switchTo;
+			s.requestExit();
+			if (s.isInteractive()) {
+				ConsoleUtil.setTerminalRegularInput();
+				System.exit(0);
 			}
+			return Dispatch.DONE;
+		}
+		if (asyncEnabled && processJobControl(s, reference, args)) {
+			s.countCommand();
+			return Dispatch.DONE;
 		}
+		if (statsEnabled && reference.equals("stats")) {
+			s.countCommand();
+			out.println(getStatsReport());
+			out.flush();
+			return Dispatch.DONE;
+		}
+		s.countCommand();
 
-		args = Arrays.copyOfRange(args, 1, args.length);
-		ArrayList<Command> cmds = m.getCommands();
+		Module switchTo = reference.equals(m.getName()) ? null : getModule(reference);
+		if (switchTo != null) {
+			out.println("Switched to module '" + switchTo.getName() + "'\n");
+			out.flush();
+			s.setModule(switchTo);
+			return Dispatch.DONE;
+		}
 
-		for (Command cmd : cmds) {
-			if (reference.equals(cmd.getDefaultReference()) || cmd.getReferences().contains(reference)) {
-				cmd.run(args);
-				return m;
-			}
+		Command cmd = m.getCommand(reference);
+		if (cmd != null && background && asyncEnabled) {
+			return runInBackground(s, cmd, reference, args, start) ? Dispatch.BACKGROUND : Dispatch.DONE;
 		}
-		System.out
-				.println("Command '" + reference + "' not recognized. Use the 'help' command for details on usage.\n");
-		return m;
+		if (cmd != null) {
+			runCommand(cmd, args);
+			return Dispatch.DONE;
+		}
+		out.println("Command '" + reference + "' not recognized. Use the 'help' command for details on usage.\n");
+		out.flush();
+		return Dispatch.NOT_FOUND;
 	}
 
 	/**
-	 * Finds the command in the module that matches user-given input, and executes
-	 * that command with given arguments, if any
+	 * Runs the 'jobs', 'wait' and 'cancel' commands
 	 * 
-	 * @param m
-	 *            Current module
-	 * @return Either current module or module user switches to
+	 * @param s
+	 *            Current session
+	 * @param reference
+	 *            Reference typed by the user
+	 * @param args
+	 *            Arguments following the reference
+	 * @return <code>true</code> if the reference was one of the job control
+	 *         commands
+	 * @throws IOException
 	 * @throws InterruptedException
-	 * @throws IOExceoption
 	 */
-	private Module runModule(Module m) throws InterruptedException, IOException {
-		while (true) {
-
-			String prompt = getPrompt(m);
-			ArrayList<String> references = m.getReferences();
-			for (Module other : modules) {
-				if (!other.equals(m)) {
-					references.add(other.getName());
+	private boolean processJobControl(Session s, String reference, String[] args)
+			throws IOException, InterruptedException {
+		TerminalWriter out = s.getWriter();
+		JobTable jobs = getJobTable(s);
+		switch (reference) {
+		case "jobs":
+			for (JobTable.Job job : jobs.getJobs()) {
+				out.println(String.format("[%d] Running %.1fs\t%s", job.getId(), job.getElapsed(), job.getLine()));
+			}
+			out.println();
+			break;
+		case "wait":
+			if (args.length == 0) {
+				jobs.awaitAll();
+				break;
+			}
+			for (String arg : args) {
+				Integer id = parseJobId(arg, out);
+				JobTable.Job job = id == null ? null : jobs.getJob(id);
+				if (job != null) {
+					jobs.await(job);
+				}
+			}
+			break;
+		case "cancel":
+			if (args.length == 0) {
+				out.println("Usage: ~$ cancel <job ids>\n");
+			}
+			for (String arg : args) {
+				Integer id = parseJobId(arg, out);
+				if (id != null && !jobs.cancel(id)) {
+					out.println("No job running with id " + id + "\n");
 				}
 			}
+			break;
+		default:
+			return false;
+		}
+		out.flush();
+		return true;
+	}
 
-			String result = InputUtil.promptUserInput(references, prompt);
-			result = result.trim().replaceAll(" +", " ");
-			if (historyEnabled && result.length() > 0) {
-				InputUtil.addHistory(result);
+	private Integer parseJobId(String arg, TerminalWriter out) {
+		try {
+			return Integer.valueOf(arg);
+		} catch (NumberFormatException e) {
+			out.println("'" + arg + "' is not a job id\n");
+			return null;
+		}
+	}
+
+	/**
+	 * Starts a command in the background. Commands that require regular input
+	 * mode are not started. The job is counted in the input metrics when it
+	 * finishes.
+	 * 
+	 * @param s
+	 *            Current session
+	 * @param cmd
+	 *            Command to run
+	 * @param reference
+	 *            Reference the command was called with
+	 * @param args
+	 *            Arguments passed to the command
+	 * @param start
+	 *            time processing the input started, from
+	 *            {@link System#nanoTime()}
+	 * @return <code>true</code> if the command was started
+	 * @throws IOException
+	 */
+	private boolean runInBackground(Session s, final Command cmd, String reference, final String[] args,
+			final long start) throws IOException {
+		TerminalWriter out = s.getWriter();
+		if (cmd.requiresRegularInput()) {
+			out.println("Command '" + reference + "' reads from the console and cannot run in the background.\n");
+			out.flush();
+			return false;
+		}
+		StringBuilder line = new StringBuilder(reference);
+		for (String arg : args) {
+			line.append(' ').append(arg);
+		}
+		JobTable.Job job = getJobTable(s).submit(line.toString(), new Runnable() {
+			@Override
+			public void run() {
+				try {
+					cmd.run(args);
+				} finally {
+					inputMetrics.record(System.nanoTime() - start, false);
+				}
 			}
+		});
+		out.println("[" + job.getId() + "] " + job.getLine());
+		out.flush();
+		return true;
+	}
+
+	/**
+	 * Splits a line of user input into commands and arguments and processes it
+	 * 
+	 * @param s
+	 *            Current session
+	 * @param line
+	 *            Line of user input
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	void processLine(Session s, String line) throws IOException, InterruptedException {
+		line = line.trim();
+		if (s.getHistory() != null && historyEnabled && line.length() > 0) {
+			s.getHistory().addEntry(line);
+		}
+		Tokenizer t = s.getTokenizer();
+		t.setBackgroundEnabled(asyncEnabled);
+		t.tokenize(line);
+		processUserInput(s, t);
+	}
+
+	/**
+	 * Runs a command, restoring regular input mode around its execution if the
+	 * command requires it and the session is in raw input mode.
+	 * 
+	 * @param cmd
+	 *            Command to run
+	 * @param args
+	 *            Arguments passed to the command
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void runCommand(Command cmd, String[] args) throws IOException, InterruptedException {
+		if (!cmd.requiresRegularInput() || !ConsoleUtil.isRawInput()) {
+			cmd.run(args);
+			return;
+		}
+		ConsoleUtil.setTerminalRegularInput();
+		try {
+			cmd.run(args);
+		} finally {
+			ConsoleUtil.setTerminalRawInput();
+		}
+	}
 
-			String[] args = result.split(" ");
-			return processUserInput(m, args);
+	/**
+	 * Prompts the user for a line of input in the session's current module and
+	 * processes it
+	 * 
+	 * @param s
+	 *            Current session
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	private void runModule(Session s) throws InterruptedException, IOException {
+		Module m = s.getModule();
+		String result = editor.promptUserInput(getCompleter(m, s.getHistory()), getPrompt(s));
+		processLine(s, result);
+		if (editor.isEndOfInput()) {
+			s.requestExit();
 		}
 	}
 
@@ -365,9 +1231,16 @@ public class ConsoleClient {
 	 * 
 	 * @param m
 	 *            Module to add
+	 * @throws IllegalArgumentException
+	 *             if the client already has a module with the same name
 	 */
-	public void addModule(Module m) {
-		modules.add(m);
+	public synchronized void addModule(Module m) {
+		if (modules.containsKey(m.getName())) {
+			throw new IllegalArgumentException("Duplicate module name found: " + m.getName());
+		}
+		modules.put(m.getName(), m);
+		moduleNames.add(m.getName());
+		modulesVersion++;
 	}
 
 	/**
@@ -376,35 +1249,289 @@ public class ConsoleClient {
 	 * @param m
 	 *            Module to remove
 	 */
-	public void removeModule(Module m) {
-		modules.remove(m);
+	public synchronized void removeModule(Module m) {
+		if (modules.remove(m.getName(), m)) {
+			moduleNames.remove(m.getName());
+			helpPages.remove(m);
+			fuzzyCompletions.remove(m);
+			providers.remove(m.getName());
+			Integer weight = loadedModules.remove(m.getName());
+			if (weight != null) {
+				loadedCommands -= weight;
+			}
+			modulesVersion++;
+		}
 	}
 
 	/**
-	 * Runs the console application accross all modules, starting from the home
-	 * module
+	 * Adds the modules of a provider to the client. The user can switch to these
+	 * modules by typing their names in the CLI, and each module is built by the
+	 * provider when the user first switches to it.
+	 * 
+	 * @param provider
+	 *            Provider of modules to add
+	 * @throws IllegalArgumentException
+	 *             if the client already has a module with the same name as one of
+	 *             the provider's modules
 	 */
-	public void runConsole() {
+	public synchronized void addModuleProvider(ModuleProvider provider) {
+		ArrayList<String> names = new ArrayList<>();
+		for (String name : provider.getModuleNames()) {
+			name = name.toLowerCase();
+			if (modules.containsKey(name) || names.contains(name)) {
+				throw new IllegalArgumentException("Duplicate module name found: " + name);
+			}
+			names.add(name);
+		}
+		for (String name : names) {
+			modules.put(name, null);
+			providers.put(name, provider);
+			moduleNames.add(name);
+		}
+		modulesVersion++;
+	}
+
+	/**
+	 * Adds the modules of every {@link ModuleProvider} registered as a service on
+	 * the class path, as with {@link #addModuleProvider(ModuleProvider)}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if two modules have the same name
+	 */
+	public void loadModuleProviders() {
+		for (ModuleProvider provider : ServiceLoader.load(ModuleProvider.class)) {
+			addModuleProvider(provider);
+		}
+	}
+
+	/**
+	 * Sets how many commands the modules built by providers may hold in total.
+	 * When a module is built and the modules built by providers hold more
+	 * commands than this, the modules used least recently are dropped until they
+	 * fit, and built again if the user switches back to them. The module just
+	 * built is never dropped, and sessions in a dropped module keep using it. By
+	 * default there is no limit.
+	 * 
+	 * @param commands
+	 *            Most commands held by modules built by providers
+	 * @throws IllegalArgumentException
+	 *             if the budget is negative
+	 */
+	public synchronized void setModuleBudget(int commands) {
+		if (commands < 0) {
+			throw new IllegalArgumentException("Module budget cannot be negative: " + commands);
+		}
+		moduleBudget = commands;
+		evictModules(null);
+	}
+
+	/**
+	 * @param name
+	 *            Name of a module
+	 * @return <code>true</code> if the client has a module with the given name
+	 *         that is built, either because it was added directly or because
+	 *         its provider built it and it has not been dropped since
+	 */
+	public synchronized boolean isModuleLoaded(String name) {
+		return modules.get(name) != null;
+	}
+
+	/**
+	 * Finds a module by name, asking its provider to build it if it is not
+	 * loaded, and marks it as used most recently
+	 * 
+	 * @param name
+	 *            Name of a module
+	 * @return the module, or <code>null</code> if the client has none with the
+	 *         given name
+	 * @throws IllegalStateException
+	 *             if the provider builds a module with another name
+	 */
+	synchronized Module getModule(String name) {
+		Module m = modules.get(name);
+		ModuleProvider provider = providers.get(name);
+		if (provider == null) {
+			return m;
+		}
+		if (m != null) {
+			loadedModules.get(name); // mark as used
+			return m;
+		}
+		m = provider.createModule(name);
+		if (m == null || !m.getName().equals(name)) {
+			throw new IllegalStateException("Module provider did not build module '" + name + "'");
+		}
+		modules.put(name, m);
+		int weight = m.getCommands().size();
+		loadedModules.put(name, weight);
+		loadedCommands += weight;
+		evictModules(name);
+		return m;
+	}
+
+	/**
+	 * Drops the modules built by providers that were used least recently until
+	 * they fit in the budget
+	 * 
+	 * @param keep
+	 *            Name of a module not to drop, or null
+	 */
+	private void evictModules(String keep) {
+		Iterator<Map.Entry<String, Integer>> it = loadedModules.entrySet().iterator();
+		while (loadedCommands > moduleBudget && it.hasNext()) {
+			Map.Entry<String, Integer> entry = it.next();
+			if (entry.getKey().equals(keep)) {
+				continue;
+			}
+			Module dropped = modules.put(entry.getKey(), null);
+			helpPages.remove(dropped);
+			fuzzyCompletions.remove(dropped);
+			loadedCommands -= entry.getValue();
+			it.remove();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the module is the one the client holds under
+	 *         its name, and not one dropped since, so that what is cached for it
+	 *         is freed when it is dropped
+	 */
+	private synchronized boolean isResident(Module m) {
+		return modules.get(m.getName()) == m;
+	}
+
+	/**
+	 * @return names of the client's modules, copied so that they can be read
+	 *         while modules are added or removed
+	 */
+	private synchronized List<String> getModuleNames() {
+		return new ArrayList<>(modules.keySet());
+	}
+
+	private synchronized int getModuleCount() {
+		return modules.size();
+	}
+
+	/**
+	 * Adds the names of the client's modules that start with the given prefix to
+	 * a list, under the lock that guards changes to the modules
+	 */
+	private synchronized void completeModuleName(String prefix, List<String> candidates) {
+		moduleNames.complete(prefix, candidates);
+	}
+
+	private synchronized void installShutdownHooks() {
+		if (shutdownHooksInstalled) {
+			return;
+		}
+		shutdownHooksInstalled = true;
 		for (Thread e : shutdownHooks) {
 			Runtime.getRuntime().addShutdownHook(e);
 		}
 		Runtime.getRuntime().addShutdownHook(new Thread() {
 			@Override
 			public void run() {
+				Path dumpFile = statsDumpFile;
+				if (dumpFile != null) {
+					dumpStats(dumpFile);
+				}
 				try {
+					editor.restoreTerminal();
 					ConsoleUtil.setTerminalRegularInput();
+					editor.getHistory().close();
 				} catch (IOException | InterruptedException e) {
 					e.printStackTrace();
 				}
 			}
 		});
+	}
+
+	/**
+	 * Runs the console application accross all modules, starting from the home
+	 * module. If the client's line editor reads from streams rather than the
+	 * terminal, the console runs until the input ends or the 'exit' command is
+	 * reached, and does not exit the application.
+	 */
+	public void runConsole() {
+		installShutdownHooks();
 		try {
-			Module m = runModule(home);
-			while (true) { // main loop
-				m = runModule(m);
+			if (editor.isTerminal()) {
+				ConsoleUtil.setTerminalRawInput();
+			}
+			Session s = new Session(home, editor.getWriter(), editor.isTerminal(), editor.getHistory());
+			while (!s.isExitRequested()) { // main loop
+				runModule(s);
 			}
 		} catch (InterruptedException | IOException e) {
 			e.printStackTrace();
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Runs the commands in a script file without prompting the user, starting from
+	 * the home module. Each line of the file is processed as if the user had typed
+	 * it into the console. The run stops at the end of the file or when the 'exit'
+	 * command is reached, and does not exit the application.
+	 * 
+	 * @param script
+	 *            Path to the script file
+	 * @return Number of commands run
+	 * @throws IOException
+	 */
+	public long runScript(Path script) throws IOException {
+		try (InputStream in = Files.newInputStream(script)) {
+			return runStream(in);
+		}
+	}
+
+	/**
+	 * Runs the commands read from a stream without prompting the user, starting
+	 * from the home module. Each line of the stream is processed as if the user
+	 * had typed it into the console. The run stops at the end of the stream or when
+	 * the 'exit' command is reached, and does not exit the application. Commands
+	 * started in the background are waited for before the run ends. How long the
+	 * run took can be read afterwards with {@link #getScriptNanos()}, and is
+	 * reported on standard error if {@link #enableScriptReport(boolean)} is set.
+	 * 
+	 * @param in
+	 *            Stream of commands, one line at a time
+	 * @return Number of commands run
+	 * @throws IOException
+	 */
+	public long runStream(InputStream in) throws IOException {
+		installShutdownHooks();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in), 1 << 16);
+		Session s = new Session(home, editor.getWriter(), false, null);
+
+		long start = System.nanoTime();
+		try {
+			String line;
+			while (!s.isExitRequested() && (line = reader.readLine()) != null) {
+				processLine(s, line);
+			}
+			if (s.getJobTable() != null) {
+				s.getJobTable().awaitAll();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		scriptNanos = System.nanoTime() - start;
+
+		s.getWriter().flush();
+		long count = s.getCommandCount();
+		if (scriptReportEnabled) {
+			System.err.printf("Ran %d commands in %.3f s (%.0f commands/s)%n", count, scriptNanos / 1e9,
+					scriptNanos == 0 ? 0.0 : count * 1e9 / scriptNanos);
+		}
+		return count;
+	}
+
+	/**
+	 * @return how long the last run of {@link #runScript(Path)} or
+	 *         {@link #runStream(InputStream)} took, in nanoseconds, or 0 if
+	 *         neither has run
+	 */
+	public long getScriptNanos() {
+		return scriptNanos;
+	}
+}
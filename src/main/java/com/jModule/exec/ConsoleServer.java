@@ -0,0 +1,198 @@
+package com.jmodule.exec;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import com.jmodule.util.HistoryStore;
+import com.jmodule.util.RoutedOutputStream;
+import com.jmodule.util.TerminalWriter;
+
+/**
+ * Serves the modules of a console client over TCP, so that one application can
+ * be used by many people at once. Every connection is a separate session with
+ * its own current module, history and background jobs, and anything its
+ * commands print to <code>System.out</code> is sent back over that connection.
+ * <P>
+ * Sessions are line-based, so they can be used with simple tools such as
+ * <code>nc</code> or <code>telnet</code>: the client's prompt is sent, the
+ * connection's next line is run as if it was typed into the console, and the
+ * session ends at the 'exit' command or when the connection is closed. Each
+ * connection is handled on its own virtual thread when the Java runtime
+ * supports them, and on a daemon thread otherwise.
+ * <P>
+ * Commands shared between sessions can run at the same time, so any state they
+ * keep must be thread-safe. Commands that require regular input mode read from
+ * the server's console and should not be used in served modules.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class ConsoleServer implements Closeable {
+
+	private final ConsoleClient client;
+	private final ExecutorService executor = JobTable.newExecutor();
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+	private ServerSocket server;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param client
+	 *            Client whose modules, prompt and history settings are served
+	 */
+	public ConsoleServer(ConsoleClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Starts accepting connections on the loopback interface
+	 *
+	 * @param port
+	 *            Port to listen on, or 0 to pick any free port
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	public void start(int port) throws IOException {
+		start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/**
+	 * Starts accepting connections on the given address. Be advised that the
+	 * server does not authenticate its users, so it should only be bound to
+	 * addresses that untrusted users cannot reach.
+	 *
+	 * @param address
+	 *            Address to listen on
+	 * @throws IOException
+	 *             if the address cannot be bound
+	 * @throws IllegalStateException
+	 *             if the server has already been started
+	 */
+	public synchronized void start(InetSocketAddress address) throws IOException {
+		if (server != null) {
+			throw new IllegalStateException("Console server has already been started!");
+		}
+		client.getOutput();
+		server = new ServerSocket();
+		server.bind(address);
+		Thread acceptor = new Thread("jmodule-server") {
+			@Override
+			public void run() {
+				acceptConnections();
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @return the port the server is listening on, or -1 if it has not been
+	 *         started
+	 */
+	public synchronized int getPort() {
+		return server == null ? -1 : server.getLocalPort();
+	}
+
+	/**
+	 * @return number of sessions currently connected
+	 */
+	public int getSessionCount() {
+		return connections.size();
+	}
+
+	private void acceptConnections() {
+		while (!closed) {
+			final Socket socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e) {
+				if (!closed) {
+					e.printStackTrace();
+				}
+				return;
+			}
+			connections.add(socket);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						serve(socket);
+					} catch (IOException e) {
+						// the connection was lost
+					} finally {
+						connections.remove(socket);
+						try {
+							socket.close();
+						} catch (IOException e) {
+							// already closed
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Runs a session on a connection until the user exits or the connection is
+	 * closed
+	 *
+	 * @param socket
+	 *            The connection
+	 * @throws IOException
+	 */
+	private void serve(Socket socket) throws IOException {
+		socket.setTcpNoDelay(true);
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		OutputStream sink = new BufferedOutputStream(socket.getOutputStream());
+		TerminalWriter out = new TerminalWriter(sink, StandardCharsets.UTF_8);
+		Session s = new Session(client.getHome(), out, false, new HistoryStore());
+
+		RoutedOutputStream output = client.getOutput();
+		output.redirect(sink);
+		try {
+			while (!s.isExitRequested()) {
+				out.print(client.getPrompt(s));
+				out.flush();
+				String line = in.readLine();
+				if (line == null) {
+					break;
+				}
+				client.processLine(s, line);
+				out.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			output.unroute();
+			if (s.getJobTable() != null) {
+				s.getJobTable().shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting connections and closes every session
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		if (server != null) {
+			server.close();
+		}
+		for (Socket socket : connections) {
+			socket.close();
+		}
+		executor.shutdownNow();
+	}
+}
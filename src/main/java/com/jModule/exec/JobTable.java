@@ -0,0 +1,232 @@
+package com.jmodule.exec;
+
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jmodule.util.RoutedOutputStream;
+
+/**
+ * Runs commands in the background and keeps track of the ones that have not
+ * finished yet. Each job's output is routed above the prompt with the job's id
+ * in front of every line. Commands in a parallel chain run on the same threads,
+ * with their output captured so that it can be printed in order. Each session
+ * has its own table.
+ * <P>
+ * Jobs run on virtual threads when the Java runtime supports them, and on a
+ * cached pool of daemon threads otherwise.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+class JobTable {
+
+	/**
+	 * A command running in the background
+	 */
+	static class Job {
+		private final int id;
+		private final String line;
+		private final long started = System.nanoTime();
+		private final OutputStream sink;
+		private FutureTask<Void> task;
+
+		Job(int id, String line, OutputStream sink) {
+			this.id = id;
+			this.line = line;
+			this.sink = sink;
+		}
+
+		int getId() {
+			return id;
+		}
+
+		String getLine() {
+			return line;
+		}
+
+		/**
+		 * @return seconds since the job was started
+		 */
+		double getElapsed() {
+			return (System.nanoTime() - started) / 1e9;
+		}
+	}
+
+	private final ExecutorService executor = newExecutor();
+	private final ConcurrentSkipListMap<Integer, Job> jobs = new ConcurrentSkipListMap<>();
+	private final AtomicInteger nextId = new AtomicInteger(1);
+	private final RoutedOutputStream output;
+
+	/**
+	 * @param output
+	 *            stream installed as <code>System.out</code> that job output is
+	 *            routed through
+	 */
+	JobTable(RoutedOutputStream output) {
+		this.output = output;
+	}
+
+	/**
+	 * Starts a job. If the current thread's output is redirected, the job's output
+	 * is sent to the same stream.
+	 *
+	 * @param line
+	 *            the command line the job was started with
+	 * @param command
+	 *            work to run in the background
+	 * @return the job that was started
+	 */
+	Job submit(String line, final Runnable command) {
+		final Job job = new Job(nextId.getAndIncrement(), line, output.getSink());
+		job.task = new FutureTask<>(new Runnable() {
+			@Override
+			public void run() {
+				String status = "Done";
+				output.route("[" + job.id + "] ", job.sink);
+				try {
+					command.run();
+				} catch (Throwable t) { // errors too, which the task would otherwise swallow
+					status = "Failed (" + t + ")";
+				} finally {
+					output.unroute();
+					if (jobs.remove(job.id, job)) {
+						output.printLine("[" + job.id + "] " + status + "\t" + job.line, job.sink);
+					}
+				}
+			}
+		}, null);
+		jobs.put(job.id, job);
+		executor.execute(job.task);
+		return job;
+	}
+
+	/**
+	 * Runs a command on another thread and captures everything it prints. If the
+	 * command throws an exception or error, the failure is added to its output.
+	 *
+	 * @param command
+	 *            work to run
+	 * @return the command's output, available when it is done
+	 */
+	Future<String> runCaptured(final Runnable command) {
+		FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+			@Override
+			public String call() {
+				String text;
+				output.capture();
+				try {
+					command.run();
+				} catch (Throwable t) {
+					System.out.println("Failed (" + t + ")\n");
+				} finally {
+					text = output.endCapture();
+				}
+				return text;
+			}
+		});
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * @return the jobs that have not finished, in the order they were started
+	 */
+	Collection<Job> getJobs() {
+		return jobs.values();
+	}
+
+	/**
+	 * @param id
+	 *            id of a job
+	 * @return the job with the given id, or null if it is not running
+	 */
+	Job getJob(int id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * Waits for a job to finish
+	 *
+	 * @param job
+	 *            job to wait for
+	 * @throws InterruptedException
+	 */
+	void await(Job job) throws InterruptedException {
+		try {
+			job.task.get();
+		} catch (ExecutionException | CancellationException e) {
+			// reported by the job itself or by cancel()
+		}
+	}
+
+	/**
+	 * Waits for every job that is running to finish
+	 *
+	 * @throws InterruptedException
+	 */
+	void awaitAll() throws InterruptedException {
+		for (Job job : jobs.values()) {
+			await(job);
+		}
+	}
+
+	/**
+	 * Cancels a job, interrupting it if it is running
+	 *
+	 * @param id
+	 *            id of the job
+	 * @return <code>true</code> if the job was cancelled, <code>false</code> if it
+	 *         is not running
+	 */
+	boolean cancel(int id) {
+		Job job = jobs.remove(id);
+		if (job == null) {
+			return false;
+		}
+		job.task.cancel(true);
+		output.printLine("[" + job.id + "] Cancelled\t" + job.line, job.sink);
+		return true;
+	}
+
+	/**
+	 * Cancels every job and stops accepting new ones
+	 */
+	void shutdown() {
+		for (Integer id : jobs.keySet()) {
+			cancel(id);
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return an executor that runs each task on a new virtual thread, or on a
+	 *         cached daemon thread if the runtime has no virtual threads
+	 */
+	static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			// virtual threads are not available on this runtime
+		}
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger(1);
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "jmodule-job-" + count.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+}
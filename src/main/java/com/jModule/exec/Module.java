@@ -1,23 +1,44 @@
 package com.jmodule.exec;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import com.jmodule.def.Command;
+import com.jmodule.def.ReferenceListener;
+import com.jmodule.def.UsageListener;
+import com.jmodule.util.CompletionIndex;
 
 /**
  * Represents a module holding a group of possible commands relating to a
  * certain function
  * 
  * @author Pierce Kelaita
- * @version 1.3.1
+ * @version 1.4.0
  *
  */
 public class Module {
 
 	private ArrayList<Command> commands = new ArrayList<>();
+	private HashMap<String, Command> referenceIndex = new HashMap<>();
 	private String name;
 	private String helpAppend;
 	private String helpReset;
+	private CompletionIndex completions = new CompletionIndex();
+	private volatile int version = 0;
+	private ReferenceListener referenceListener = new ReferenceListener() {
+		@Override
+		public void referenceAdded(Command command, String reference) {
+			checkReference(reference);
+			referenceIndex.put(reference, command);
+			completions.add(reference);
+		}
+	};
+	private UsageListener usageListener = new UsageListener() {
+		@Override
+		public void usageChanged(Command command) {
+			version++;
+		}
+	};
 
 	/**
 	 * Sets the name and the display promt that will come up on the CLI
@@ -26,6 +47,8 @@ public class Module {
 	 */
 	public Module(String name) {
 		this.name = name.toLowerCase();
+		completions.add("help");
+		completions.add("exit");
 	}
 
 	public String getName() {
@@ -44,14 +67,88 @@ public class Module {
 		return helpReset;
 	}
 
+	/**
+	 * @return a number that is incremented whenever the module's help page
+	 *         changes, including changes to the usage of its commands
+	 */
+	int getHelpVersion() {
+		return version;
+	}
+
+	/**
+	 * @return index of every reference to a command in the module, plus 'help' and
+	 *         'exit'
+	 */
+	CompletionIndex getCompletions() {
+		return completions;
+	}
+
+	private void checkReference(String reference) {
+		if (referenceIndex.containsKey(reference)) {
+			throw new IllegalArgumentException("Duplicate reference found in module '" + name + "': " + reference);
+		}
+	}
+
 	/**
 	 * Adds to a list of commands that are only accessible when the user has
 	 * switched to this module.
 	 * 
 	 * @param c
+	 * @throws IllegalArgumentException
+	 *             if one of the command's references is already used by a command
+	 *             in this module
 	 */
 	public void addCommand(Command c) {
+		ArrayList<String> refs = new ArrayList<>(c.getReferences());
+		refs.add(0, c.getDefaultReference());
+		for (int i = 0; i < refs.size(); i++) {
+			checkReference(refs.get(i));
+			if (refs.subList(0, i).contains(refs.get(i))) {
+				throw new IllegalArgumentException(
+						"Duplicate reference found in command '" + c.getName() + "': " + refs.get(i));
+			}
+		}
+
 		commands.add(c);
+		for (String reference : refs) {
+			referenceIndex.put(reference, c);
+			completions.add(reference);
+		}
+		c.addReferenceListener(referenceListener);
+		c.addUsageListener(usageListener);
+		version++;
+	}
+
+	/**
+	 * Removes a command from the module
+	 * 
+	 * @param c
+	 *            Command to remove
+	 */
+	public void removeCommand(Command c) {
+		if (!commands.remove(c)) {
+			return;
+		}
+		c.removeReferenceListener(referenceListener);
+		c.removeUsageListener(usageListener);
+		referenceIndex.remove(c.getDefaultReference());
+		completions.remove(c.getDefaultReference());
+		for (String reference : c.getReferences()) {
+			referenceIndex.remove(reference);
+			completions.remove(reference);
+		}
+		version++;
+	}
+
+	/**
+	 * Finds the command in this module that the given reference refers to
+	 * 
+	 * @param reference
+	 *            default or alternate reference of a command
+	 * @return the matching command, or <code>null</code> if there is none
+	 */
+	Command getCommand(String reference) {
+		return referenceIndex.get(reference);
 	}
 
 	/**
@@ -61,10 +158,11 @@ public class Module {
 	 *            Information to append to help page
 	 */
 	public void appendHelpPage(String append) {
-		this.helpAppend = this.helpAppend != null ? "\n" + append : append;
+		this.helpAppend = this.helpAppend != null ? this.helpAppend + "\n" + append : append;
 		if (this.helpReset != null) {
 			this.helpReset += "\n" + append;
 		}
+		version++;
 	}
 
 	/**
@@ -76,6 +174,7 @@ public class Module {
 	public void resetHelpPage(String reset) {
 		this.helpReset = reset;
 		this.helpAppend = null;
+		version++;
 	}
 
 	/**
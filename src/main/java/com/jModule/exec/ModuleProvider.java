@@ -0,0 +1,39 @@
+package com.jmodule.exec;
+
+import java.util.List;
+
+/**
+ * Provides modules to a console client by name, so that the client can list
+ * the modules up front and build each one only when the user first switches to
+ * it. Providers can be added to a client with
+ * {@link ConsoleClient#addModuleProvider(ModuleProvider)}, or registered as a
+ * service in <code>META-INF/services/com.jmodule.exec.ModuleProvider</code>
+ * and found with {@link ConsoleClient#loadModuleProviders()}. Registries
+ * generated from annotated commands are registered this way.
+ * <P>
+ * A client may drop a module it built to save memory and ask its provider for
+ * it again later, so each call to {@link #createModule(String)} should return a
+ * new module that behaves the same as the last.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public interface ModuleProvider {
+
+	/**
+	 * @return names of the modules this provider can build. Names are in lower
+	 *         case, like the names of modules.
+	 */
+	List<String> getModuleNames();
+
+	/**
+	 * Builds a module and its commands
+	 *
+	 * @param name
+	 *            Name of one of this provider's modules
+	 * @return a new module with the given name
+	 * @throws IllegalArgumentException
+	 *             if this provider has no module with the given name
+	 */
+	Module createModule(String name);
+}
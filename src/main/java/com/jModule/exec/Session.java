@@ -0,0 +1,92 @@
+package com.jmodule.exec;
+
+import com.jmodule.util.HistoryStore;
+import com.jmodule.util.TerminalWriter;
+import com.jmodule.util.Tokenizer;
+
+/**
+ * Holds the state of one run of a console client: the module the user is
+ * currently in, where the client's own messages are printed, the user's
+ * history and jobs, and whether the user has asked to exit. Every run of the
+ * client, including each connection to a console server, has its own session.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+class Session {
+
+	private Module module;
+	private final TerminalWriter out;
+	private final Tokenizer tokenizer = new Tokenizer();
+	private final boolean interactive;
+	private final HistoryStore history;
+	private JobTable jobTable = null;
+	private boolean exitRequested = false;
+	private long commandCount = 0;
+
+	/**
+	 * @param module
+	 *            Module the session starts in
+	 * @param out
+	 *            Writer that the client's messages are printed with
+	 * @param interactive
+	 *            if true, the 'exit' command exits the application
+	 * @param history
+	 *            store that lines of input are logged to, or null if input is not
+	 *            logged
+	 */
+	Session(Module module, TerminalWriter out, boolean interactive, HistoryStore history) {
+		this.module = module;
+		this.out = out;
+		this.interactive = interactive;
+		this.history = history;
+	}
+
+	Module getModule() {
+		return module;
+	}
+
+	void setModule(Module module) {
+		this.module = module;
+	}
+
+	TerminalWriter getWriter() {
+		return out;
+	}
+
+	Tokenizer getTokenizer() {
+		return tokenizer;
+	}
+
+	boolean isInteractive() {
+		return interactive;
+	}
+
+	HistoryStore getHistory() {
+		return history;
+	}
+
+	JobTable getJobTable() {
+		return jobTable;
+	}
+
+	void setJobTable(JobTable jobTable) {
+		this.jobTable = jobTable;
+	}
+
+	boolean isExitRequested() {
+		return exitRequested;
+	}
+
+	void requestExit() {
+		exitRequested = true;
+	}
+
+	long getCommandCount() {
+		return commandCount;
+	}
+
+	void countCommand() {
+		commandCount++;
+	}
+}
@@ -0,0 +1,26 @@
+package com.jmodule.util;
+
+import java.util.List;
+
+/**
+ * Supplies the possible completions for the word at the cursor when the user
+ * presses the tab key.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public interface Completer {
+
+	/**
+	 * Adds every possible completion of the word at the end of the given text to
+	 * a list. Each candidate replaces the whole word.
+	 *
+	 * @param text
+	 *            characters on the line before the cursor
+	 * @param wordStart
+	 *            index in the text at which the word being completed starts
+	 * @param candidates
+	 *            list that possible completions are added to
+	 */
+	void complete(String text, int wordStart, List<String> candidates);
+}
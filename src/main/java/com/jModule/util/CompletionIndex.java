@@ -0,0 +1,167 @@
+package com.jmodule.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prefix tree of the words that can be completed with the tab key. Words can be
+ * added and removed one at a time, and finding the words that start with a
+ * prefix takes time proportional to the length of the prefix plus the size of
+ * the result.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class CompletionIndex {
+
+	private static final char[] NO_KEYS = new char[0];
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private static final class Node {
+		char[] keys = NO_KEYS;
+		Node[] children = NO_CHILDREN;
+		int size = 0;
+		String word;
+		int count = 0;
+
+		Node child(char c) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			return i >= 0 ? children[i] : null;
+		}
+
+		Node addChild(char c) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			if (i >= 0) {
+				return children[i];
+			}
+			i = -i - 1;
+			if (size == keys.length) {
+				int capacity = Math.max(2, size * 2);
+				keys = Arrays.copyOf(keys, capacity);
+				children = Arrays.copyOf(children, capacity);
+			}
+			System.arraycopy(keys, i, keys, i + 1, size - i);
+			System.arraycopy(children, i, children, i + 1, size - i);
+			keys[i] = c;
+			children[i] = new Node();
+			size++;
+			return children[i];
+		}
+
+		void removeChild(char c) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			if (i < 0) {
+				return;
+			}
+			System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+			System.arraycopy(children, i + 1, children, i, size - i - 1);
+			size--;
+			children[size] = null;
+		}
+	}
+
+	private final Node root = new Node();
+	private int words = 0;
+
+	/**
+	 * @return number of distinct words in the index
+	 */
+	public int size() {
+		return words;
+	}
+
+	/**
+	 * Adds a word to the index. A word that is added more than once stays in the
+	 * index until it has been removed as many times.
+	 *
+	 * @param word
+	 *            word to add
+	 */
+	public void add(String word) {
+		Node node = root;
+		for (int i = 0; i < word.length(); i++) {
+			node = node.addChild(word.charAt(i));
+		}
+		if (node.count++ == 0) {
+			node.word = word;
+			words++;
+		}
+	}
+
+	/**
+	 * Removes one occurrence of a word from the index
+	 *
+	 * @param word
+	 *            word to remove
+	 * @return <code>true</code> if the word was in the index
+	 */
+	public boolean remove(String word) {
+		Node[] path = new Node[word.length() + 1];
+		Node node = root;
+		path[0] = root;
+		for (int i = 0; i < word.length(); i++) {
+			node = node.child(word.charAt(i));
+			if (node == null) {
+				return false;
+			}
+			path[i + 1] = node;
+		}
+		if (node.count == 0) {
+			return false;
+		}
+		if (--node.count > 0) {
+			return true;
+		}
+		node.word = null;
+		words--;
+
+		// prune nodes that no longer lead to a word
+		for (int i = word.length(); i > 0 && path[i].count == 0 && path[i].size == 0; i--) {
+			path[i - 1].removeChild(word.charAt(i - 1));
+		}
+		return true;
+	}
+
+	/**
+	 * @param word
+	 *            word to look for
+	 * @return <code>true</code> if the word is in the index
+	 */
+	public boolean contains(String word) {
+		Node node = find(word);
+		return node != null && node.count > 0;
+	}
+
+	/**
+	 * Adds every word that starts with the given prefix to a list, in
+	 * lexicographic order
+	 *
+	 * @param prefix
+	 *            prefix to complete
+	 * @param out
+	 *            list that matching words are added to
+	 */
+	public void complete(CharSequence prefix, List<String> out) {
+		Node node = find(prefix);
+		if (node != null) {
+			collect(node, out);
+		}
+	}
+
+	private Node find(CharSequence prefix) {
+		Node node = root;
+		for (int i = 0; i < prefix.length() && node != null; i++) {
+			node = node.child(prefix.charAt(i));
+		}
+		return node;
+	}
+
+	private static void collect(Node node, List<String> out) {
+		if (node.count > 0) {
+			out.add(node.word);
+		}
+		for (int i = 0; i < node.size; i++) {
+			collect(node.children[i], out);
+		}
+	}
+}
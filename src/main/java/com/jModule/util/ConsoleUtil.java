@@ -9,36 +9,142 @@ import java.io.InputStream;
  * https://www.darkcoding.net/software/non-blocking-console-io-is-not-possible/
  * 
  * Toggles the terminal between raw input mode (reading input character by
- * character) and regular input mode (reading input line by line)
+ * character) and regular input mode (reading input line by line).
+ * <P>
+ * The terminal mode is switched in-process through termios when the native
+ * library is available (see NativeTerminal), and through a single stty
+ * subprocess per switch otherwise. The original terminal configuration is
+ * captured once and reused for every restore.
  * 
  * @author Pierce Kelaita
- * @version 1.3.1
+ * @version 1.4.0
  */
 public class ConsoleUtil {
 
 	private static String ttyConfig;
+	private static boolean rawInput = false;
+	private static byte[] typeahead = new byte[64];
+	private static int typeaheadStart = 0;
+	private static int typeaheadEnd = 0;
 
 	/**
-	 * Sets terminal to raw input mode. You can't run this twice in a row or else
-	 * you'll lock your terminal in raw input mode!
+	 * Sets terminal to raw input mode. Does nothing if the terminal is already in
+	 * raw input mode.
 	 * 
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	public static void setTerminalRawInput() throws IOException, InterruptedException {
-		ttyConfig = stty("-g");
-		stty("-icanon min 1");
-		stty("-echo");
+	public static synchronized void setTerminalRawInput() throws IOException, InterruptedException {
+		if (rawInput) {
+			return;
+		}
+		if (!NativeTerminal.isAvailable() || !NativeTerminal.setRawInput()) {
+			if (ttyConfig == null) {
+				ttyConfig = stty("-g").trim();
+			}
+			stty("-icanon min 1 -echo");
+		}
+		rawInput = true;
 	}
 
 	/**
-	 * Sets terminal to regular input mode
+	 * Sets terminal to regular input mode. Does nothing if the terminal is not in
+	 * raw input mode. Bytes that were typed ahead but not yet read are buffered so
+	 * that they are not consumed as line input, and are returned by
+	 * {@link #read()} once the next prompt starts reading.
 	 * 
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	public static void setTerminalRegularInput() throws IOException, InterruptedException {
-		stty(ttyConfig.trim());
+	public static synchronized void setTerminalRegularInput() throws IOException, InterruptedException {
+		if (!rawInput) {
+			return;
+		}
+		bufferTypeahead();
+		if (ttyConfig != null) {
+			stty(ttyConfig);
+		} else {
+			NativeTerminal.restoreInput();
+		}
+		rawInput = false;
+	}
+
+	/**
+	 * Reads the next byte of user input, replaying buffered typeahead before
+	 * reading from standard input.
+	 * 
+	 * @return the next byte of input, or -1 at the end of the stream
+	 * @throws IOException
+	 */
+	public static int read() throws IOException {
+		synchronized (ConsoleUtil.class) {
+			if (typeaheadStart < typeaheadEnd) {
+				return typeahead[typeaheadStart++] & 0xff;
+			}
+		}
+		return System.in.read();
+	}
+
+	/**
+	 * Reads up to the given number of bytes of user input, replaying buffered
+	 * typeahead before reading from standard input. Waits until at least one byte
+	 * is available, and then reads no more than can be read without waiting.
+	 * 
+	 * @param b
+	 *            buffer the bytes are read into
+	 * @param off
+	 *            offset in the buffer of the first byte read
+	 * @param len
+	 *            most bytes read
+	 * @return the number of bytes read, or -1 at the end of the stream
+	 * @throws IOException
+	 */
+	public static int read(byte[] b, int off, int len) throws IOException {
+		synchronized (ConsoleUtil.class) {
+			if (typeaheadStart < typeaheadEnd) {
+				int n = Math.min(len, typeaheadEnd - typeaheadStart);
+				System.arraycopy(typeahead, typeaheadStart, b, off, n);
+				typeaheadStart += n;
+				return n;
+			}
+		}
+		return System.in.read(b, off, len);
+	}
+
+	/**
+	 * @return number of bytes of user input that can be read without waiting
+	 * @throws IOException
+	 */
+	public static int available() throws IOException {
+		synchronized (ConsoleUtil.class) {
+			if (typeaheadStart < typeaheadEnd) {
+				return typeaheadEnd - typeaheadStart;
+			}
+		}
+		return System.in.available();
+	}
+
+	private static void bufferTypeahead() throws IOException {
+		int available = System.in.available();
+		if (available <= 0) {
+			return;
+		}
+		if (typeaheadStart == typeaheadEnd) {
+			typeaheadStart = typeaheadEnd = 0;
+		}
+		if (typeaheadEnd + available > typeahead.length) {
+			byte[] grown = new byte[Math.max(typeahead.length * 2, typeaheadEnd + available)];
+			System.arraycopy(typeahead, 0, grown, 0, typeaheadEnd);
+			typeahead = grown;
+		}
+		typeaheadEnd += Math.max(0, System.in.read(typeahead, typeaheadEnd, available));
+	}
+
+	/**
+	 * @return <code>true</code> if the terminal is currently in raw input mode
+	 */
+	public static synchronized boolean isRawInput() {
+		return rawInput;
 	}
 
 	/**
@@ -61,10 +167,12 @@ public class ConsoleUtil {
 			bout.write(c);
 		}
 
+		p.waitFor();
+
 		String result = new String(bout.toByteArray());
 		return result;
 	}
-	
+
 	private ConsoleUtil() {
 		throw new AssertionError();
 	}
@@ -1,21 +1,18 @@
 package com.jmodule.util;
 
 /**
- * Defines ASCII bytes corresponding to characters that have special uses in
- * InputUtil
+ * Defines ASCII bytes corresponding to control keys that have special uses in
+ * LineEditor. Other keys are decoded by KeyDecoder.
  * 
  * @author Pierce Kelaita
- * @version 1.3.1
+ * @version 1.4.0
  */
 final class EscapeCharacter {
+	final static byte CTRL_G = 7;
 	final static byte DELETE_NUMPAD = 8;
 	final static byte TAB = 9;
 	final static byte ENTER = 10;
-	final static byte ESCAPE = 27;
-	final static byte UP_SEQ = 65;
-	final static byte DOWN_SEQ = 66;
-	final static byte RIGHT_SEQ = 67;
-	final static byte LEFT_SEQ = 68;
+	final static byte CTRL_R = 18;
 	final static byte DELETE = 127;
 
 	private EscapeCharacter() {
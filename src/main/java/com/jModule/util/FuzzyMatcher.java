@@ -0,0 +1,336 @@
+package com.jmodule.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Ranks words by how well they match a query whose characters appear in the
+ * word in order, but not necessarily next to each other, so that for example
+ * "gco" matches "git-commit". Matches score higher when their characters are
+ * next to each other, start words or follow a separator such as '-' or a
+ * change from lower to upper case, and when the word was used recently.
+ * Matching ignores case, with a small bonus for characters typed in the same
+ * case.
+ * <P>
+ * Each character of the query is matched at its first position after the
+ * previous character's match, so the matches of a query are found by
+ * extending the matches of the query without its last character. The matches
+ * of every prefix of the last query are kept, so typing a character only looks
+ * at the words that matched before it, and deleting characters costs nothing.
+ * The words are packed into one array along with the bonus of each of their
+ * characters, and the order that breaks ties is worked out once, so matching
+ * and ranking a word only compares chars and ints. Where each character first
+ * appears in each word is also worked out once, so the first character typed
+ * does not need to look through the words, and a mask of the characters in
+ * each word lets most words without the next character typed be skipped. A
+ * matcher is meant to be used from one thread at a time.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class FuzzyMatcher {
+
+	private static final int MATCH = 16;
+	private static final int FIRST_CHARACTER = 16;
+	private static final int BOUNDARY = 10;
+	private static final int CONSECUTIVE = 8;
+	private static final int SAME_CASE = 1;
+	private static final int GAP_START = 3;
+	private static final int GAP_EXTENSION = 1;
+	private static final int RECENCY = 32;
+
+	/**
+	 * The words that matched one prefix of the query, with the position each
+	 * word's match ends at and its score so far
+	 */
+	private static final class Level {
+		int[] ids;
+		int[] ends;
+		int[] scores;
+		int size = 0;
+
+		Level(int capacity) {
+			ids = new int[capacity];
+			ends = new int[capacity];
+			scores = new int[capacity];
+		}
+
+		void add(int id, int end, int score) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+				scores = Arrays.copyOf(scores, size * 2);
+			}
+			ids[size] = id;
+			ends[size] = end;
+			scores[size] = score;
+			size++;
+		}
+	}
+
+	private final String[] words;
+	private final char[] chars; // every word, in order
+	private final char[] folded; // every word in lower case
+	private final byte[] bonus; // bonus for matching each character where it is
+	private final int[] starts; // index of each word in the arrays, and their end
+	private final long[] masks; // characters that each word contains, see bit(char)
+	private final HashMap<Character, Level> firstMatches = new HashMap<>(); // by lower case character
+	private final int[] tiebreak; // position of each word sorted by length and then text
+	private final int[] sorted; // words sorted by length and then text
+	private final HashMap<String, Integer> ids = new HashMap<>();
+	private final int[] boost;
+	private final ArrayList<Integer> boosted = new ArrayList<>();
+	private List<String> recent = new ArrayList<>();
+
+	private final StringBuilder query = new StringBuilder();
+	private Level[] levels = new Level[8];
+
+	/**
+	 * @param words
+	 *            the words that queries are matched against
+	 */
+	public FuzzyMatcher(Collection<String> words) {
+		this.words = words.toArray(new String[0]);
+		int n = this.words.length;
+		this.boost = new int[n];
+		this.starts = new int[n + 1];
+		this.masks = new long[n];
+		int total = 0;
+		for (int i = 0; i < n; i++) {
+			starts[i] = total;
+			total += this.words[i].length();
+			ids.put(this.words[i], i);
+		}
+		starts[n] = total;
+
+		chars = new char[total];
+		folded = new char[total];
+		bonus = new byte[total];
+		for (int i = 0; i < n; i++) {
+			String word = this.words[i];
+			int start = starts[i];
+			word.getChars(0, word.length(), chars, start);
+			for (int pos = 0; pos < word.length(); pos++) {
+				char at = word.charAt(pos);
+				char c = Character.toLowerCase(at);
+				folded[start + pos] = c;
+				masks[i] |= bit(c);
+				if (pos == 0) {
+					bonus[start] = FIRST_CHARACTER;
+				} else {
+					char before = word.charAt(pos - 1);
+					if (!Character.isLetterOrDigit(before)
+							|| Character.isLowerCase(before) && Character.isUpperCase(at)) {
+						bonus[start + pos] = BOUNDARY;
+					}
+				}
+
+				// record where the character first appears in the word
+				Level first = firstMatches.get(c);
+				if (first == null) {
+					first = new Level(16);
+					firstMatches.put(c, first);
+				}
+				if (first.size == 0 || first.ids[first.size - 1] != i) {
+					first.add(i, start + pos, MATCH + bonus[start + pos] - GAP_EXTENSION * pos);
+				}
+			}
+		}
+
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				String x = FuzzyMatcher.this.words[a];
+				String y = FuzzyMatcher.this.words[b];
+				return x.length() != y.length() ? x.length() - y.length() : x.compareTo(y);
+			}
+		});
+		tiebreak = new int[n];
+		sorted = new int[n];
+		for (int i = 0; i < n; i++) {
+			tiebreak[order[i]] = i;
+			sorted[i] = order[i];
+		}
+	}
+
+	/**
+	 * @return number of words that queries are matched against
+	 */
+	public int size() {
+		return words.length;
+	}
+
+	/**
+	 * Sets the words used recently, which rank higher the more recently they were
+	 * used. Does nothing if the list is the same as the last one set.
+	 *
+	 * @param recent
+	 *            words used recently, most recent first
+	 */
+	public void setRecent(List<String> recent) {
+		if (recent.equals(this.recent)) {
+			return;
+		}
+		this.recent = new ArrayList<>(recent);
+		for (int id : boosted) {
+			boost[id] = 0;
+		}
+		boosted.clear();
+		for (int i = 0; i < recent.size(); i++) {
+			Integer id = ids.get(recent.get(i));
+			if (id != null && boost[id] == 0) {
+				boost[id] = Math.max(1, RECENCY * (recent.size() - i) / recent.size());
+				boosted.add(id);
+			}
+		}
+	}
+
+	/**
+	 * Adds the best matches of a query to a list, best first. Ties are broken in
+	 * favor of shorter words, and then in lexicographic order. An empty query
+	 * matches every word.
+	 *
+	 * @param q
+	 *            query to match
+	 * @param limit
+	 *            most matches added
+	 * @param out
+	 *            list that matching words are added to
+	 */
+	public void complete(CharSequence q, int limit, List<String> out) {
+		int common = 0;
+		while (common < q.length() && common < query.length() && q.charAt(common) == query.charAt(common)) {
+			common++;
+		}
+		query.setLength(common);
+		for (int k = common; k < q.length(); k++) {
+			query.append(q.charAt(k));
+			extend(k);
+		}
+		rank(q.length(), limit, out);
+	}
+
+	/**
+	 * Finds the words matching the query up to and including the character at
+	 * the given index, from the words matching the query before it
+	 */
+	private void extend(int k) {
+		Level prev = k == 0 ? null : levels[k - 1];
+		char typed = query.charAt(k);
+		char c = Character.toLowerCase(typed);
+		if (prev == null) {
+			prev = firstMatches.get(c);
+			if (prev == null) {
+				prev = new Level(0);
+			}
+		}
+		int candidates = prev.size;
+		if (k == levels.length) {
+			Level[] grown = new Level[levels.length * 2];
+			System.arraycopy(levels, 0, grown, 0, levels.length);
+			levels = grown;
+		}
+		Level level = levels[k];
+		if (level == null || level.ids.length < candidates) {
+			level = new Level(Math.max(candidates, 16));
+			levels[k] = level;
+		}
+		if (k == 0) { // the first matches of every character are known
+			for (int i = 0; i < candidates; i++) {
+				int pos = prev.ends[i];
+				level.ids[i] = prev.ids[i];
+				level.ends[i] = pos;
+				level.scores[i] = prev.scores[i] + (chars[pos] == typed ? SAME_CASE : 0);
+			}
+			level.size = candidates;
+			return;
+		}
+		long bit = bit(c);
+
+		int n = 0;
+		for (int i = 0; i < candidates; i++) {
+			int id = prev.ids[i];
+			if ((masks[id] & bit) == 0) {
+				continue;
+			}
+			int end = starts[id + 1];
+			int prevEnd = prev.ends[i];
+			int pos = prevEnd + 1;
+			while (pos < end && folded[pos] != c) {
+				pos++;
+			}
+			if (pos == end) {
+				continue;
+			}
+
+			int score = MATCH + bonus[pos];
+			if (pos == prevEnd + 1) {
+				score += CONSECUTIVE;
+			} else {
+				score -= GAP_START + GAP_EXTENSION * (pos - prevEnd - 2);
+			}
+			if (chars[pos] == typed) {
+				score += SAME_CASE;
+			}
+			level.ids[n] = id;
+			level.ends[n] = pos;
+			level.scores[n] = prev.scores[i] + score;
+			n++;
+		}
+		level.size = n;
+	}
+
+	/**
+	 * @return a bit of a mask of characters, one for each letter and digit and
+	 *         the others sharing the remaining bits
+	 */
+	private static long bit(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return 1L << c - 'a';
+		} else if (c >= '0' && c <= '9') {
+			return 1L << 26 + c - '0';
+		}
+		return 1L << 36 + c % 28;
+	}
+
+	/**
+	 * Picks the best matches of the query of the given length. Each match is
+	 * ranked by a single number, its score in the high bits and its position in
+	 * the tie-breaking order in the low bits.
+	 */
+	private void rank(int length, int limit, List<String> out) {
+		Level level = length == 0 ? null : levels[length - 1];
+		int candidates = level == null ? words.length : level.size;
+		long[] best = new long[Math.min(limit, candidates)];
+		if (best.length == 0) {
+			return;
+		}
+		int found = 0;
+		for (int i = 0; i < candidates; i++) {
+			int id = level == null ? i : level.ids[i];
+			int score = (level == null ? 0 : level.scores[i]) + boost[id];
+			long rank = (long) score << 32 | Integer.MAX_VALUE - tiebreak[id];
+			if (found == best.length && rank <= best[found - 1]) {
+				continue;
+			}
+			// insert into the sorted list of best matches
+			int j = found == best.length ? found - 1 : found++;
+			while (j > 0 && rank > best[j - 1]) {
+				best[j] = best[j - 1];
+				j--;
+			}
+			best[j] = rank;
+		}
+		for (int i = 0; i < found; i++) {
+			out.add(words[sorted[Integer.MAX_VALUE - (int) best[i]]]);
+		}
+	}
+}
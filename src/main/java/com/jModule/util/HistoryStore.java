@@ -0,0 +1,377 @@
+package com.jmodule.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent lines of user input in a ring buffer of fixed maximum
+ * size. Adding an entry takes constant time, and once the buffer is full the
+ * oldest entry is dropped. The store is a read-only list with the most recent
+ * entry at index 0.
+ * <P>
+ * A store can be backed by a file, which keeps history between runs. Entries
+ * are appended to the file, one per line, through a memory-mapped region at
+ * the end of the file, so an append is a copy into memory rather than a write
+ * call. The file is read lazily, the first time the history is used. Only the
+ * last entries that fit in the store are located, by scanning the mapped file
+ * backwards, and each of them is only decoded when it is asked for. When most
+ * of the file is older than the entries kept, the file is rewritten with just
+ * those entries.
+ * <P>
+ * The store can be searched for entries containing a string. The first search
+ * builds an index of the three-character sequences in each entry, which is
+ * kept up to date as entries are added, so that a search only looks at the
+ * entries sharing the least common sequence of the string searched for.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class HistoryStore extends AbstractList<String> {
+
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	private static final int LOG_CHUNK = 1 << 16;
+	private static final long COMPACT_THRESHOLD = 1 << 20;
+
+	private final int maxSize;
+	private String[] entries;
+	private int head = 0; // slot the next entry is written to
+	private int count = 0;
+	private int sequence = 0; // number of entries ever added, including loaded ones
+
+	private TrigramIndex index = null;
+	private int prunedTo = 0; // sequence number of the oldest entry in the index
+
+	private final Path file;
+	private FileChannel channel = null;
+	private boolean loaded;
+	private long end = 0; // file position that the next entry is appended at
+	private MappedByteBuffer log = null;
+
+	// entries read from the file, in slots 0 to loadedCount - 1 until replaced
+	private ByteBuffer loadedBytes = null;
+	private int[] loadedStarts = null;
+	private int loadedCount = 0;
+
+	/**
+	 * Creates a store kept in memory only, holding up to
+	 * {@value #DEFAULT_MAX_SIZE} entries
+	 */
+	public HistoryStore() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Creates a store kept in memory only
+	 *
+	 * @param maxSize
+	 *            maximum number of entries kept
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is not positive
+	 */
+	public HistoryStore(int maxSize) {
+		this(maxSize, null);
+	}
+
+	/**
+	 * Creates a store backed by a file. The file is created if it does not exist,
+	 * and its entries are read the first time the store is used.
+	 *
+	 * @param maxSize
+	 *            maximum number of entries kept
+	 * @param file
+	 *            file that entries are read from and appended to, or null to keep
+	 *            the store in memory only
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is not positive
+	 */
+	public HistoryStore(int maxSize, Path file) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("History size must be positive: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		this.entries = new String[Math.min(maxSize, 16)];
+		this.file = file;
+		this.loaded = file == null;
+	}
+
+	/**
+	 * @return maximum number of entries kept
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the file backing this store, or null if it is kept in memory only
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Adds an entry as the most recent one, dropping the oldest entry if the store
+	 * is full. Line breaks and null characters in the entry are replaced with
+	 * spaces.
+	 *
+	 * @param entry
+	 *            line of user input
+	 * @throws IOException
+	 *             if the entry cannot be appended to the file
+	 */
+	public synchronized void addEntry(String entry) throws IOException {
+		load();
+		entry = entry.replace('\n', ' ').replace('\r', ' ').replace('\0', ' ');
+		if (count == entries.length && entries.length < maxSize) {
+			entries = Arrays.copyOf(entries, (int) Math.min(maxSize, entries.length * 2L));
+			head = count;
+		}
+		entries[head] = entry;
+		head = (head + 1) % entries.length;
+		if (count < entries.length) {
+			count++;
+		}
+		modCount++;
+		if (index != null) {
+			index.add(sequence, entry);
+			int oldest = sequence + 1 - count;
+			if (oldest - prunedTo >= count) { // as many dropped entries as kept ones
+				index.prune(oldest);
+				prunedTo = oldest;
+			}
+		}
+		sequence++;
+		if (channel != null) {
+			append(entry);
+		}
+	}
+
+	/**
+	 * @param index
+	 *            0 for the most recent entry, 1 for the one before it, and so on
+	 * @return the entry at the given index
+	 */
+	@Override
+	public synchronized String get(int index) {
+		load();
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		int slot = (head - 1 - index + entries.length) % entries.length;
+		if (entries[slot] == null) {
+			entries[slot] = decode(slot);
+		}
+		return entries[slot];
+	}
+
+	@Override
+	public synchronized int size() {
+		load();
+		return count;
+	}
+
+	/**
+	 * Finds the most recent entry containing a string, starting at a given index.
+	 * Searching again from the index after the one found gives the next older
+	 * match. Strings shorter than three characters are searched for by looking at
+	 * every entry.
+	 *
+	 * @param query
+	 *            string to search for
+	 * @param from
+	 *            index of the most recent entry to consider
+	 * @return the index of the entry found, or -1 if there is none or the query is
+	 *         empty
+	 */
+	public synchronized int search(CharSequence query, int from) {
+		load();
+		String q = query.toString();
+		if (q.isEmpty()) {
+			return -1;
+		}
+		from = Math.max(from, 0);
+		if (q.length() < TrigramIndex.N) {
+			for (int i = from; i < count; i++) {
+				if (get(i).contains(q)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		if (index == null) {
+			index = new TrigramIndex();
+			prunedTo = sequence - count;
+			for (int i = count - 1; i >= 0; i--) {
+				index.add(sequence - 1 - i, get(i));
+			}
+		}
+		TrigramIndex.Postings candidates = index.candidates(q);
+		int oldest = sequence - count;
+		for (int k = candidates.lastAtMost(sequence - 1 - from); k >= 0; k--) {
+			int seq = candidates.seqs[k];
+			if (seq < oldest) {
+				break;
+			}
+			int i = sequence - 1 - seq;
+			if (get(i).contains(q)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Trims the file to the entries written and closes it. Entries added after
+	 * the store is closed are kept in memory only.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		if (log != null) {
+			log.force();
+			log = null;
+		}
+		channel.truncate(end);
+		channel.close();
+		channel = null;
+	}
+
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		try {
+			open();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read history file " + file, e);
+		}
+	}
+
+	/**
+	 * Opens the file, finds the entries to keep, and compacts the file if they
+	 * are only a small part of it
+	 */
+	private void open() throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long size = channel.size();
+		if (size == 0) {
+			return;
+		}
+		long regionStart = Math.max(0, size - Integer.MAX_VALUE);
+		MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, size - regionStart);
+
+		// skip the unused end of the last mapped log chunk
+		int last = bytes.limit();
+		while (last > 0 && bytes.get(last - 1) == 0) {
+			last--;
+		}
+		end = regionStart + last;
+		boolean terminated = last == 0 || bytes.get(last - 1) == '\n';
+		if (!terminated) { // the last entry was cut short
+			channel.write(ByteBuffer.wrap(new byte[] { '\n' }), end);
+			end++;
+		}
+
+		// find the start of each of the last entries, scanning backwards
+		int[] starts = new int[Math.min(maxSize, 16)];
+		int found = 0;
+		int i = terminated ? last - 1 : last;
+		while (i >= 0 && found < maxSize) {
+			int start = i;
+			while (start > 0 && bytes.get(start - 1) != '\n') {
+				start--;
+			}
+			if (found == starts.length) {
+				starts = Arrays.copyOf(starts, (int) Math.min(maxSize, starts.length * 2L));
+			}
+			starts[found++] = start;
+			i = start - 1;
+		}
+		if (found == 0) {
+			return;
+		}
+
+		// lay the entries out oldest first, as if they had just been added
+		loadedStarts = new int[found + 1];
+		for (int k = 0; k < found; k++) {
+			loadedStarts[k] = starts[found - 1 - k];
+		}
+		loadedStarts[found] = terminated ? last : last + 1;
+		loadedBytes = bytes;
+		loadedCount = found;
+		entries = new String[Math.max(entries.length, found)];
+		count = found;
+		sequence = found;
+		head = found % entries.length;
+
+		long keptStart = regionStart + loadedStarts[0];
+		if (keptStart > COMPACT_THRESHOLD && keptStart > end / 2) {
+			compact(keptStart);
+		}
+	}
+
+	/**
+	 * Rewrites the file with only the entries from the given position onwards
+	 */
+	private void compact(long keptStart) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			long position = keptStart;
+			while (position < end) {
+				position += channel.transferTo(position, end - position, out);
+			}
+		}
+
+		// decode the kept entries before the mapping of the old file goes away
+		for (int slot = 0; slot < loadedCount; slot++) {
+			entries[slot] = decode(slot);
+		}
+		loadedBytes = null;
+		loadedStarts = null;
+		loadedCount = 0;
+
+		channel.close();
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		end = channel.size();
+	}
+
+	private String decode(int slot) {
+		int start = loadedStarts[slot];
+		int length = loadedStarts[slot + 1] - 1 - start;
+		byte[] bytes = new byte[length];
+		ByteBuffer view = loadedBytes.duplicate();
+		view.position(start);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Copies an entry into the mapped region at the end of the file, mapping a
+	 * new region when the current one is full
+	 */
+	private void append(String entry) throws IOException {
+		byte[] bytes = (entry + "\n").getBytes(StandardCharsets.UTF_8);
+		if (log == null || log.remaining() < bytes.length) {
+			log = channel.map(FileChannel.MapMode.READ_WRITE, end, Math.max(LOG_CHUNK, bytes.length));
+		}
+		log.put(bytes);
+		end += bytes.length;
+	}
+}
@@ -0,0 +1,488 @@
+package com.jmodule.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns the bytes a terminal sends in raw input mode into keys. Input is read
+ * in blocks into a buffer and decoded by a state machine driven by two tables:
+ * one that sorts every byte into a class, and one that gives the action to
+ * take for each class in each state. UTF-8 characters, control keys, CSI
+ * (<code>ESC [</code>) and SS3 (<code>ESC O</code>) sequences and keys pressed
+ * with Alt are decoded without allocating.
+ * <P>
+ * Each key is an int. Characters and control keys are their Unicode code
+ * point, and other keys are the constants of this class above
+ * {@link Character#MAX_CODE_POINT}. Keys pressed with Shift, Alt or Ctrl have
+ * the matching modifier bits set, for example <code>ALT | 'b'</code> or
+ * <code>CTRL | LEFT</code>. Sequences that are not recognized are returned as
+ * {@link #UNKNOWN} rather than as the characters they are made of.
+ * <P>
+ * A key that arrives split across reads, as often happens over SSH or on a
+ * slow terminal, is waited for for a short time, set with
+ * {@link #setEscapeTimeout(int)}. If the rest of the key does not arrive in
+ * time, what was read so far is returned as a key on its own, so that a lone
+ * press of Escape is not mistaken for the start of a sequence.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public final class KeyDecoder {
+
+	public static final int EOF = -1;
+	public static final int ESCAPE = 27;
+	public static final int BACKSPACE = 127;
+
+	public static final int UP = 0x110000;
+	public static final int DOWN = 0x110001;
+	public static final int RIGHT = 0x110002;
+	public static final int LEFT = 0x110003;
+	public static final int HOME = 0x110004;
+	public static final int END = 0x110005;
+	public static final int INSERT = 0x110006;
+	public static final int DELETE = 0x110007;
+	public static final int PAGE_UP = 0x110008;
+	public static final int PAGE_DOWN = 0x110009;
+	public static final int PASTE_START = 0x11000a;
+	public static final int PASTE_END = 0x11000b;
+	/** F1 to F12 are F1 + 0 to F1 + 11 */
+	public static final int F1 = 0x110010;
+	public static final int UNKNOWN = 0x1100ff;
+
+	public static final int SHIFT = 1 << 21;
+	public static final int ALT = 1 << 22;
+	public static final int CTRL = 1 << 23;
+	private static final int KEY_MASK = SHIFT - 1;
+
+	private static final int REPLACEMENT = 0xfffd;
+	private static final int POLL_MILLIS = 2; // time between checks for the rest of a key
+
+	// byte classes
+	private static final int C_CONTROL = 0; // C0 controls other than ESC
+	private static final int C_ESC = 1;
+	private static final int C_INTERMEDIATE = 2; // space to '/'
+	private static final int C_PARAM = 3; // '0' to '?'
+	private static final int C_FINAL = 4; // '@' to '~' other than '[' and 'O'
+	private static final int C_BRACKET = 5; // '['
+	private static final int C_O = 6; // 'O'
+	private static final int C_DEL = 7;
+	private static final int C_CONTINUATION = 8; // 0x80 to 0xbf
+	private static final int C_LEAD2 = 9;
+	private static final int C_LEAD3 = 10;
+	private static final int C_LEAD4 = 11;
+	private static final int C_INVALID = 12;
+	private static final int CLASSES = 13;
+
+	// states
+	private static final int S_GROUND = 0;
+	private static final int S_ESC = 1;
+	private static final int S_CSI = 2;
+	private static final int S_CSI_INTERMEDIATE = 3;
+	private static final int S_SS3 = 4;
+	private static final int S_UTF8 = 5;
+
+	// actions
+	private static final byte EMIT = 0; // the byte is a key
+	private static final byte EMIT_ALT = 1; // the byte is a key pressed with Alt
+	private static final byte ENTER_ESC = 2;
+	private static final byte ENTER_CSI = 3;
+	private static final byte ENTER_SS3 = 4;
+	private static final byte PARAM = 5;
+	private static final byte INTERMEDIATE = 6;
+	private static final byte CSI_FINAL = 7;
+	private static final byte SS3_FINAL = 8;
+	private static final byte LEAD = 9;
+	private static final byte CONTINUE = 10;
+	private static final byte INVALID = 11; // emit a replacement character
+	private static final byte ABORT = 12; // drop the sequence and decode the byte again
+	private static final byte IGNORE = 13;
+
+	private static final byte[] CLASS = new byte[256];
+	private static final byte[][] ACTION = new byte[6][CLASSES];
+	private static final int[] FINAL_KEYS = new int[128];
+	private static final int[] TILDE_KEYS = new int[35];
+
+	static {
+		for (int b = 0; b < 256; b++) {
+			int c;
+			if (b == 27) {
+				c = C_ESC;
+			} else if (b < 0x20) {
+				c = C_CONTROL;
+			} else if (b < 0x30) {
+				c = C_INTERMEDIATE;
+			} else if (b < 0x40) {
+				c = C_PARAM;
+			} else if (b == '[') {
+				c = C_BRACKET;
+			} else if (b == 'O') {
+				c = C_O;
+			} else if (b < 0x7f) {
+				c = C_FINAL;
+			} else if (b == 0x7f) {
+				c = C_DEL;
+			} else if (b < 0xc0) {
+				c = C_CONTINUATION;
+			} else if (b < 0xc2) {
+				c = C_INVALID; // overlong encodings of ASCII
+			} else if (b < 0xe0) {
+				c = C_LEAD2;
+			} else if (b < 0xf0) {
+				c = C_LEAD3;
+			} else if (b < 0xf5) {
+				c = C_LEAD4;
+			} else {
+				c = C_INVALID;
+			}
+			CLASS[b] = (byte) c;
+		}
+
+		byte[] ground = ACTION[S_GROUND];
+		for (int c = 0; c < CLASSES; c++) {
+			ground[c] = EMIT;
+		}
+		ground[C_ESC] = ENTER_ESC;
+		ground[C_CONTINUATION] = INVALID;
+		ground[C_LEAD2] = LEAD;
+		ground[C_LEAD3] = LEAD;
+		ground[C_LEAD4] = LEAD;
+		ground[C_INVALID] = INVALID;
+
+		byte[] esc = ACTION[S_ESC];
+		for (int c = 0; c < CLASSES; c++) {
+			esc[c] = EMIT_ALT;
+		}
+		esc[C_BRACKET] = ENTER_CSI;
+		esc[C_O] = ENTER_SS3;
+		esc[C_CONTINUATION] = ABORT;
+		esc[C_LEAD2] = ABORT;
+		esc[C_LEAD3] = ABORT;
+		esc[C_LEAD4] = ABORT;
+		esc[C_INVALID] = ABORT;
+
+		byte[] csi = ACTION[S_CSI];
+		byte[] csiIntermediate = ACTION[S_CSI_INTERMEDIATE];
+		byte[] ss3 = ACTION[S_SS3];
+		for (int c = 0; c < CLASSES; c++) {
+			csi[c] = ABORT;
+			csiIntermediate[c] = ABORT;
+			ss3[c] = ABORT;
+		}
+		csi[C_PARAM] = PARAM;
+		csi[C_INTERMEDIATE] = INTERMEDIATE;
+		csi[C_FINAL] = CSI_FINAL;
+		csi[C_BRACKET] = CSI_FINAL;
+		csi[C_O] = CSI_FINAL;
+		csi[C_CONTROL] = IGNORE; // controls within a sequence are executed, not part of it
+		csiIntermediate[C_INTERMEDIATE] = INTERMEDIATE;
+		csiIntermediate[C_FINAL] = CSI_FINAL;
+		csiIntermediate[C_BRACKET] = CSI_FINAL;
+		csiIntermediate[C_O] = CSI_FINAL;
+		csiIntermediate[C_CONTROL] = IGNORE;
+		ss3[C_PARAM] = PARAM; // modifiers, as sent by some terminals
+		ss3[C_FINAL] = SS3_FINAL;
+		ss3[C_BRACKET] = SS3_FINAL;
+		ss3[C_O] = SS3_FINAL;
+
+		byte[] utf8 = ACTION[S_UTF8];
+		for (int c = 0; c < CLASSES; c++) {
+			utf8[c] = ABORT;
+		}
+		utf8[C_CONTINUATION] = CONTINUE;
+
+		for (int i = 0; i < FINAL_KEYS.length; i++) {
+			FINAL_KEYS[i] = UNKNOWN;
+		}
+		FINAL_KEYS['A'] = UP;
+		FINAL_KEYS['B'] = DOWN;
+		FINAL_KEYS['C'] = RIGHT;
+		FINAL_KEYS['D'] = LEFT;
+		FINAL_KEYS['H'] = HOME;
+		FINAL_KEYS['F'] = END;
+		FINAL_KEYS['P'] = F1;
+		FINAL_KEYS['Q'] = F1 + 1;
+		FINAL_KEYS['R'] = F1 + 2;
+		FINAL_KEYS['S'] = F1 + 3;
+
+		for (int i = 0; i < TILDE_KEYS.length; i++) {
+			TILDE_KEYS[i] = UNKNOWN;
+		}
+		TILDE_KEYS[1] = HOME;
+		TILDE_KEYS[2] = INSERT;
+		TILDE_KEYS[3] = DELETE;
+		TILDE_KEYS[4] = END;
+		TILDE_KEYS[5] = PAGE_UP;
+		TILDE_KEYS[6] = PAGE_DOWN;
+		TILDE_KEYS[7] = HOME;
+		TILDE_KEYS[8] = END;
+		int[] functionKeys = { 11, 12, 13, 14, 15, 17, 18, 19, 20, 21, 23, 24 };
+		for (int i = 0; i < functionKeys.length; i++) {
+			TILDE_KEYS[functionKeys[i]] = F1 + i;
+		}
+	}
+
+	private final InputStream in;
+	private final byte[] buf;
+	private int pos = 0;
+	private int limit = 0;
+	private long bytesRead = 0;
+	private long escapeTimeout = 100_000_000; // in nanoseconds
+
+	// state of the key being decoded
+	private int codePoint;
+	private int minCodePoint;
+	private int continuations;
+	private int param;
+	private int firstParam;
+	private int secondParam;
+	private int params;
+
+	/**
+	 * Creates a decoder that reads from the terminal, through
+	 * {@link ConsoleUtil#read(byte[], int, int)}
+	 */
+	public KeyDecoder() {
+		this(null);
+	}
+
+	/**
+	 * @param in
+	 *            stream of bytes as sent by a terminal in raw input mode, or null
+	 *            to read from the terminal
+	 */
+	public KeyDecoder(InputStream in) {
+		this(in, 4096);
+	}
+
+	/**
+	 * @param in
+	 *            stream of bytes as sent by a terminal in raw input mode, or null
+	 *            to read from the terminal
+	 * @param bufferSize
+	 *            most bytes read at once
+	 * @throws IllegalArgumentException
+	 *             if the buffer size is not positive
+	 */
+	public KeyDecoder(InputStream in, int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		this.in = in;
+		this.buf = new byte[bufferSize];
+	}
+
+	/**
+	 * @return number of bytes read from the input so far
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Sets how long to wait for the rest of a key that has been partly read, such
+	 * as the bytes that follow ESC in an escape sequence. This value is set to
+	 * 100 milliseconds by default.
+	 *
+	 * @param millis
+	 *            milliseconds to wait, or 0 to only decode bytes already sent
+	 * @throws IllegalArgumentException
+	 *             if the time is negative
+	 */
+	public void setEscapeTimeout(int millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("Escape timeout cannot be negative: " + millis);
+		}
+		escapeTimeout = millis * 1_000_000L;
+	}
+
+	/**
+	 * Reads and decodes the next key, waiting for input if none has been read yet
+	 *
+	 * @return the next key, or {@link #EOF} at the end of the input
+	 * @throws IOException
+	 */
+	public int next() throws IOException {
+		int state = S_GROUND;
+		while (true) {
+			if (pos == limit && !fill(state == S_GROUND)) {
+				// the input ended, or paused in the middle of a key
+				switch (state) {
+				case S_GROUND:
+					return EOF;
+				case S_ESC:
+					return ESCAPE;
+				case S_CSI:
+					if (params == 0 && param == -1) {
+						return ALT | '[';
+					}
+					return UNKNOWN;
+				case S_SS3:
+					return ALT | 'O';
+				case S_UTF8:
+					return REPLACEMENT;
+				default:
+					return UNKNOWN;
+				}
+			}
+			int b = buf[pos++] & 0xff;
+			switch (ACTION[state][CLASS[b]]) {
+			case EMIT:
+				return b;
+			case EMIT_ALT:
+				return ALT | b;
+			case ENTER_ESC:
+				state = S_ESC;
+				break;
+			case ENTER_CSI:
+				state = S_CSI;
+				startParams();
+				break;
+			case ENTER_SS3:
+				state = S_SS3;
+				startParams();
+				break;
+			case PARAM:
+				if (b >= '0' && b <= '9') {
+					param = (param < 0 ? 0 : param) * 10 + b - '0';
+					if (param > 9999) {
+						param = 9999;
+					}
+				} else if (b == ';' || b == ':') {
+					endParam();
+				}
+				break;
+			case INTERMEDIATE:
+				state = S_CSI_INTERMEDIATE;
+				break;
+			case CSI_FINAL:
+				endParam();
+				if (b == '~') {
+					if (firstParam == 200) {
+						return PASTE_START;
+					} else if (firstParam == 201) {
+						return PASTE_END;
+					}
+					int key = firstParam >= 0 && firstParam < TILDE_KEYS.length ? TILDE_KEYS[firstParam] : UNKNOWN;
+					return key == UNKNOWN ? key : key | modifiers(secondParam);
+				}
+				if (state == S_CSI_INTERMEDIATE || FINAL_KEYS[b] == UNKNOWN) {
+					return UNKNOWN;
+				}
+				return FINAL_KEYS[b] | modifiers(secondParam);
+			case SS3_FINAL:
+				endParam();
+				return FINAL_KEYS[b] == UNKNOWN ? UNKNOWN : FINAL_KEYS[b] | modifiers(firstParam);
+			case LEAD:
+				continuations = CLASS[b] - C_LEAD2 + 1;
+				codePoint = b & (0x3f >> continuations);
+				minCodePoint = continuations == 1 ? 0x80 : continuations == 2 ? 0x800 : 0x10000;
+				state = S_UTF8;
+				break;
+			case CONTINUE:
+				codePoint = codePoint << 6 | b & 0x3f;
+				if (--continuations == 0) {
+					boolean valid = codePoint >= minCodePoint && (codePoint < 0xd800 || codePoint > 0xdfff)
+							&& codePoint <= Character.MAX_CODE_POINT;
+					return valid ? codePoint : REPLACEMENT;
+				}
+				break;
+			case INVALID:
+				return REPLACEMENT;
+			case ABORT:
+				pos--;
+				if (state == S_ESC) { // Alt with a character that is not ASCII
+					int key = next();
+					return key == EOF ? ESCAPE : key & KEY_MASK | ALT;
+				}
+				return state == S_UTF8 ? REPLACEMENT : UNKNOWN;
+			case IGNORE:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a key is a character that can be typed into a line, as
+	 * opposed to a control key, another key or a key pressed with Alt or Ctrl
+	 *
+	 * @param key
+	 *            a key returned by {@link #next()}
+	 * @return <code>true</code> if the key is a printable character
+	 */
+	public static boolean isText(int key) {
+		return key >= ' ' && key != BACKSPACE && key <= Character.MAX_CODE_POINT;
+	}
+
+	private void startParams() {
+		param = -1;
+		firstParam = -1;
+		secondParam = -1;
+		params = 0;
+	}
+
+	private void endParam() {
+		if (params == 0) {
+			firstParam = param;
+		} else if (params == 1) {
+			secondParam = param;
+		}
+		params++;
+		param = -1;
+	}
+
+	/**
+	 * @param param
+	 *            1 plus the sum of Shift 1, Alt 2 and Ctrl 4, or -1 if absent
+	 * @return the matching modifier bits
+	 */
+	private static int modifiers(int param) {
+		if (param < 2) {
+			return 0;
+		}
+		int m = param - 1;
+		return ((m & 1) != 0 ? SHIFT : 0) | ((m & 2) != 0 ? ALT : 0) | ((m & 4) != 0 ? CTRL : 0);
+	}
+
+	/**
+	 * Reads more input into the buffer
+	 *
+	 * @param block
+	 *            if false, input is only read if it arrives within the escape
+	 *            timeout
+	 * @return <code>false</code> if no bytes were read
+	 */
+	private boolean fill(boolean block) throws IOException {
+		if (!block && !awaitInput()) {
+			return false;
+		}
+		int n = in == null ? ConsoleUtil.read(buf, 0, buf.length) : in.read(buf, 0, buf.length);
+		if (n <= 0) {
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		bytesRead += n;
+		return true;
+	}
+
+	/**
+	 * Waits up to the escape timeout for input to become available
+	 *
+	 * @return <code>true</code> if input can be read without blocking
+	 */
+	private boolean awaitInput() throws IOException {
+		long deadline = System.nanoTime() + escapeTimeout;
+		while ((in == null ? ConsoleUtil.available() : in.available()) <= 0) {
+			if (System.nanoTime() - deadline >= 0) {
+				return false;
+			}
+			try {
+				Thread.sleep(POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+}
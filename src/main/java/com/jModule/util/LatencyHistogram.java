@@ -0,0 +1,149 @@
+package com.jmodule.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations in buckets whose width grows with the duration, so that
+ * every duration is counted to within an eighth of its value and a few hundred
+ * buckets cover everything from a nanosecond to over a quarter of an hour.
+ * Durations below 16 ns have a bucket each; above that, each power of two is
+ * split into 8 buckets. Recording increments a bucket with a single atomic
+ * operation and takes no lock, so durations can be recorded from several
+ * threads at once. The buckets are only allocated when the first duration is
+ * recorded, so histograms that are never used cost little memory.
+ * <P>
+ * The statistics read while durations are being recorded may not include
+ * every duration recorded so far, but never include one twice.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 3; // 2^3 buckets in each power of two
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int MAX_EXPONENT = 40; // durations of 2^41 ns or more share the last bucket
+	private static final int BUCKETS = index((1L << MAX_EXPONENT + 1) - 1) + 1;
+
+	private volatile AtomicLongArray buckets;
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration
+	 *
+	 * @param nanos
+	 *            Duration in nanoseconds. Negative durations are recorded as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		AtomicLongArray b = buckets;
+		if (b == null) {
+			b = allocate();
+		}
+		b.getAndIncrement(Math.min(index(nanos), BUCKETS - 1));
+		total.add(nanos);
+		long m = max.get();
+		while (nanos > m && !max.compareAndSet(m, nanos)) {
+			m = max.get();
+		}
+	}
+
+	private synchronized AtomicLongArray allocate() {
+		if (buckets == null) {
+			buckets = new AtomicLongArray(BUCKETS);
+		}
+		return buckets;
+	}
+
+	/**
+	 * @return index of the bucket a duration is counted in
+	 */
+	private static int index(long nanos) {
+		if (nanos < SUB_BUCKETS << 1) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> exponent - SUB_BITS) & SUB_BUCKETS - 1;
+		return (exponent - SUB_BITS) * SUB_BUCKETS + sub + SUB_BUCKETS;
+	}
+
+	/**
+	 * @return the longest duration counted in a bucket
+	 */
+	private static long highestValue(int index) {
+		if (index < SUB_BUCKETS << 1) {
+			return index;
+		}
+		int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+		long sub = (index - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << exponent - SUB_BITS) - 1;
+	}
+
+	/**
+	 * @return number of durations recorded
+	 */
+	public long getCount() {
+		AtomicLongArray b = buckets;
+		long n = 0;
+		for (int i = 0; b != null && i < BUCKETS; i++) {
+			n += b.get(i);
+		}
+		return n;
+	}
+
+	/**
+	 * @return longest duration recorded in nanoseconds, or 0 if none were
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return average duration recorded in nanoseconds, or 0 if none were
+	 */
+	public double getMean() {
+		long n = getCount();
+		return n == 0 ? 0 : (double) total.sum() / n;
+	}
+
+	/**
+	 * Finds the duration that a given percentage of the durations recorded are
+	 * shorter than or equal to, to within the width of its bucket
+	 *
+	 * @param percentile
+	 *            Percentage between 0 and 100
+	 * @return the duration in nanoseconds, no longer than the longest duration
+	 *         recorded, or 0 if none were
+	 * @throws IllegalArgumentException
+	 *             if the percentage is not between 0 and 100
+	 */
+	public long getPercentile(double percentile) {
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+		}
+		AtomicLongArray b = buckets;
+		if (b == null) {
+			return 0;
+		}
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = b.get(i);
+			n += counts[i];
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+}
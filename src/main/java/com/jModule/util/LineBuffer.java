@@ -0,0 +1,238 @@
+package com.jmodule.util;
+
+import java.util.Arrays;
+
+/**
+ * Holds the line that is currently being edited on the CLI. Characters are
+ * stored in a primitive gap buffer: the gap always sits at the cursor, so
+ * inserting and deleting at the cursor are amortized O(1) and only moving the
+ * cursor shifts characters.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+final class LineBuffer implements CharSequence {
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private char[] buf;
+	private int gapStart = 0;
+	private int gapEnd;
+
+	LineBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	LineBuffer(int capacity) {
+		buf = new char[Math.max(capacity, 1)];
+		gapEnd = buf.length;
+	}
+
+	@Override
+	public int length() {
+		return buf.length - (gapEnd - gapStart);
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length());
+		}
+		return index < gapStart ? buf[index] : buf[index + gapEnd - gapStart];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return substring(start, end);
+	}
+
+	/**
+	 * @param start
+	 *            first index, inclusive
+	 * @param end
+	 *            last index, exclusive
+	 * @return the characters between the given indices
+	 */
+	String substring(int start, int end) {
+		if (start < 0 || end > length() || start > end) {
+			throw new IndexOutOfBoundsException("Range: [" + start + ", " + end + "), Length: " + length());
+		}
+		char[] out = new char[end - start];
+		copyTo(start, end, out, 0);
+		return new String(out);
+	}
+
+	/**
+	 * Copies a range of the line into a char array
+	 *
+	 * @param start
+	 *            first index, inclusive
+	 * @param end
+	 *            last index, exclusive
+	 * @param dest
+	 *            destination array
+	 * @param destPos
+	 *            first index to write to in the destination array
+	 */
+	void copyTo(int start, int end, char[] dest, int destPos) {
+		if (start < gapStart) {
+			int n = Math.min(end, gapStart) - start;
+			System.arraycopy(buf, start, dest, destPos, n);
+			destPos += n;
+			start += n;
+		}
+		if (start < end) {
+			int gap = gapEnd - gapStart;
+			System.arraycopy(buf, start + gap, dest, destPos, end - start);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return substring(0, length());
+	}
+
+	/**
+	 * @return position of the cursor, between 0 and {@link #length()}
+	 */
+	int getCursor() {
+		return gapStart;
+	}
+
+	/**
+	 * Moves the cursor, and with it the gap, to the given position
+	 *
+	 * @param cursor
+	 *            new cursor position
+	 */
+	void setCursor(int cursor) {
+		if (cursor < 0 || cursor > length()) {
+			throw new IndexOutOfBoundsException("Cursor: " + cursor + ", Length: " + length());
+		}
+		if (cursor < gapStart) {
+			int n = gapStart - cursor;
+			System.arraycopy(buf, cursor, buf, gapEnd - n, n);
+			gapStart -= n;
+			gapEnd -= n;
+		} else if (cursor > gapStart) {
+			int n = cursor - gapStart;
+			System.arraycopy(buf, gapEnd, buf, gapStart, n);
+			gapStart += n;
+			gapEnd += n;
+		}
+	}
+
+	/**
+	 * Inserts a character at the cursor and moves the cursor past it
+	 *
+	 * @param c
+	 *            character to insert
+	 */
+	void insert(char c) {
+		ensureGap(1);
+		buf[gapStart++] = c;
+	}
+
+	/**
+	 * Inserts a sequence of characters at the cursor and moves the cursor past it
+	 *
+	 * @param s
+	 *            characters to insert
+	 */
+	void insert(CharSequence s) {
+		int n = s.length();
+		ensureGap(n);
+		if (s instanceof String) {
+			((String) s).getChars(0, n, buf, gapStart);
+		} else {
+			for (int i = 0; i < n; i++) {
+				buf[gapStart + i] = s.charAt(i);
+			}
+		}
+		gapStart += n;
+	}
+
+	/**
+	 * Deletes the character before the cursor, both halves of it if it is a
+	 * surrogate pair
+	 *
+	 * @return <code>true</code> if a character was deleted
+	 */
+	boolean deleteBackward() {
+		if (gapStart == 0) {
+			return false;
+		}
+		gapStart -= charCountBefore(gapStart);
+		return true;
+	}
+
+	/**
+	 * Deletes the character after the cursor, both halves of it if it is a
+	 * surrogate pair
+	 *
+	 * @return <code>true</code> if a character was deleted
+	 */
+	boolean deleteForward() {
+		if (gapEnd == buf.length) {
+			return false;
+		}
+		gapEnd += charCountAfter(gapStart);
+		return true;
+	}
+
+	/**
+	 * @param index
+	 *            position in the line, greater than 0
+	 * @return 2 if the characters before the position form a surrogate pair, and
+	 *         1 otherwise
+	 */
+	int charCountBefore(int index) {
+		return index >= 2 && Character.isLowSurrogate(charAt(index - 1))
+				&& Character.isHighSurrogate(charAt(index - 2)) ? 2 : 1;
+	}
+
+	/**
+	 * @param index
+	 *            position in the line, less than its length
+	 * @return 2 if the characters after the position form a surrogate pair, and 1
+	 *         otherwise
+	 */
+	int charCountAfter(int index) {
+		return index + 1 < length() && Character.isHighSurrogate(charAt(index))
+				&& Character.isLowSurrogate(charAt(index + 1)) ? 2 : 1;
+	}
+
+	/**
+	 * Removes all characters from the line
+	 */
+	void clear() {
+		gapStart = 0;
+		gapEnd = buf.length;
+	}
+
+	/**
+	 * Replaces the contents of the line and places the cursor at its end
+	 *
+	 * @param s
+	 *            new contents, or <code>null</code> to clear the line
+	 */
+	void set(CharSequence s) {
+		clear();
+		if (s != null) {
+			insert(s);
+		}
+	}
+
+	private void ensureGap(int needed) {
+		int gap = gapEnd - gapStart;
+		if (gap >= needed) {
+			return;
+		}
+		int tail = buf.length - gapEnd;
+		int capacity = Math.max(buf.length * 2, buf.length - gap + needed);
+		char[] grown = Arrays.copyOf(buf, capacity);
+		System.arraycopy(buf, gapEnd, grown, capacity - tail, tail);
+		buf = grown;
+		gapEnd = capacity - tail;
+	}
+}
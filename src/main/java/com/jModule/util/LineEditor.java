@@ -0,0 +1,644 @@
+package com.jmodule.util;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads lines of user input one keystroke at a time, with history, tab
+ * completion and in-line editing. Each editor has its own history, settings
+ * and output, so several editors can be used in one application, and an editor
+ * can be driven from any pair of streams rather than the terminal.
+ * <P>
+ * An editor reads one line at a time and should only be prompted from one
+ * thread at a time. Text can be printed above the prompt from any thread.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class LineEditor {
+
+	private static final String BRACKETED_PASTE_ON = "\033[?2004h";
+	private static final String BRACKETED_PASTE_OFF = "\033[?2004l";
+	private static final int NO_KEY = -2; // no key read ahead, as opposed to KeyDecoder.EOF
+
+	private boolean historyEnabled = false;
+	private boolean tabCompletionEnabled = false;
+	private String alert = "";
+	private HistoryStore history = new HistoryStore();
+	private final boolean terminal;
+	private final KeyDecoder keys;
+	private final TerminalWriter out;
+	private final LineRenderer renderer;
+	private String activePrompt = null;
+	private boolean endOfInput = false;
+	private boolean bracketedPasteEnabled;
+
+	/**
+	 * Creates an editor for the terminal the application runs in. Input is read
+	 * from standard input, which is switched to raw input mode while the user is
+	 * prompted.
+	 */
+	public LineEditor() {
+		this(null, new FileOutputStream(FileDescriptor.out));
+	}
+
+	/**
+	 * Creates an editor that reads keystrokes from a stream and prints to another,
+	 * without changing any terminal modes. The input stream is expected to deliver
+	 * the same bytes a terminal in raw input mode would.
+	 *
+	 * @param in
+	 *            stream of keystrokes
+	 * @param out
+	 *            stream to print the prompt and the input line to, ideally
+	 *            unbuffered
+	 */
+	public LineEditor(InputStream in, OutputStream out) {
+		this.terminal = in == null;
+		this.bracketedPasteEnabled = terminal;
+		this.keys = new KeyDecoder(in);
+		this.out = new TerminalWriter(out);
+		this.renderer = new LineRenderer(this.out);
+	}
+
+	/**
+	 * @return <code>true</code> if this editor reads from the terminal the
+	 *         application runs in
+	 */
+	public boolean isTerminal() {
+		return terminal;
+	}
+
+	/**
+	 * @return <code>true</code> if the input stream has ended
+	 */
+	public boolean isEndOfInput() {
+		return endOfInput;
+	}
+
+	private int read() throws IOException {
+		int key = keys.next();
+		if (key == KeyDecoder.EOF) {
+			endOfInput = true;
+		}
+		return key;
+	}
+
+	public void setHistoryEnabled(boolean enabled) {
+		historyEnabled = enabled;
+	}
+
+	public void setTabCompletionEnabled(boolean enabled) {
+		tabCompletionEnabled = enabled;
+	}
+
+	public void setAlertsEnabled(boolean enabled) {
+		alert = enabled ? "\007" : "";
+	}
+
+	/**
+	 * Sets whether the CLI is asked to mark the start and end of pasted text
+	 * while the user is prompted, so that a paste is inserted into the line all
+	 * at once. Enabled by default for the terminal, and disabled by default for
+	 * editors that read from streams.
+	 *
+	 * @param enabled
+	 *            if true, turn on bracketed paste mode while prompting
+	 */
+	public void setBracketedPasteEnabled(boolean enabled) {
+		bracketedPasteEnabled = enabled;
+	}
+
+	/**
+	 * Turns off the terminal modes that are switched on while the user is
+	 * prompted, for when the application exits in the middle of a prompt
+	 *
+	 * @throws IOException
+	 */
+	public void restoreTerminal() throws IOException {
+		synchronized (out) {
+			if (activePrompt == null || !bracketedPasteEnabled) {
+				return;
+			}
+			out.print(BRACKETED_PASTE_OFF);
+		}
+		out.flush();
+	}
+
+	/**
+	 * @return the lines of input logged by this editor, most recent first
+	 */
+	public HistoryStore getHistory() {
+		return history;
+	}
+
+	/**
+	 * Replaces the store that lines of input are logged to, for example with one
+	 * backed by a file
+	 *
+	 * @param history
+	 *            history store
+	 */
+	public void setHistory(HistoryStore history) {
+		this.history = history;
+	}
+
+	public void addHistory(String entry) throws IOException {
+		history.addEntry(entry);
+	}
+
+	/**
+	 * Returns the writer that the prompt and input line are printed with. Output
+	 * printed through this writer is only sent to the CLI when the writer is
+	 * flushed.
+	 *
+	 * @return terminal writer
+	 */
+	public TerminalWriter getWriter() {
+		return out;
+	}
+
+	/**
+	 * Prints text from another thread. If the user is being prompted for input,
+	 * the text replaces the prompt, and the prompt and the user's input so far are
+	 * printed again below it.
+	 *
+	 * @param text
+	 *            text to print, without a trailing line separator
+	 * @throws IOException
+	 */
+	public void printAbovePrompt(CharSequence text) throws IOException {
+		synchronized (out) {
+			if (activePrompt == null) {
+				out.println(text);
+			} else {
+				renderer.printAbove(text, activePrompt);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * @return average number of bytes sent to the CLI per keystroke
+	 */
+	public double getBytesPerKeystroke() {
+		return out.getBytesPerEvent();
+	}
+
+	/**
+	 * @return average number of writes on standard output per keystroke
+	 */
+	public double getWritesPerKeystroke() {
+		return out.getWritesPerEvent();
+	}
+
+	/**
+	 * Moves the cursor right or left based on the key pressed and the characters
+	 * already printed to the CLI
+	 *
+	 * @param isLeft
+	 *            if true, move cursor left
+	 * @param line
+	 *            characters printed to screen
+	 */
+	private void moveCursor(boolean isLeft, LineBuffer line) {
+		int cursor = line.getCursor();
+		if (isLeft ? cursor == 0 : cursor == line.length()) {
+			out.print(alert);
+			return;
+		}
+		line.setCursor(isLeft ? cursor - line.charCountBefore(cursor) : cursor + line.charCountAfter(cursor));
+		renderer.render(line);
+	}
+
+	/**
+	 * Moves the cursor to the given position, or alerts the user if it is already
+	 * there
+	 *
+	 * @param cursor
+	 *            new cursor position
+	 * @param line
+	 *            characters printed to screen
+	 */
+	private void moveCursorTo(int cursor, LineBuffer line) {
+		if (cursor == line.getCursor()) {
+			out.print(alert);
+			return;
+		}
+		line.setCursor(cursor);
+		renderer.render(line);
+	}
+
+	/**
+	 * @param line
+	 *            characters printed to screen
+	 * @return start of the word before the cursor, skipping spaces
+	 */
+	private int previousWord(LineBuffer line) {
+		int i = line.getCursor();
+		while (i > 0 && line.charAt(i - 1) == ' ') {
+			i--;
+		}
+		while (i > 0 && line.charAt(i - 1) != ' ') {
+			i--;
+		}
+		return i;
+	}
+
+	/**
+	 * @param line
+	 *            characters printed to screen
+	 * @return end of the word after the cursor, skipping spaces
+	 */
+	private int nextWord(LineBuffer line) {
+		int i = line.getCursor();
+		while (i < line.length() && line.charAt(i) == ' ') {
+			i++;
+		}
+		while (i < line.length() && line.charAt(i) != ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Reads pasted text up to the end of the paste and inserts it at the cursor
+	 * with a single redraw. Line breaks become the ';' that separates commands,
+	 * except at the start and end of the paste, tabs become spaces, and other
+	 * keys are dropped.
+	 *
+	 * @param line
+	 *            the input line
+	 * @throws IOException
+	 */
+	private void paste(LineBuffer line) throws IOException {
+		StringBuilder text = new StringBuilder();
+		boolean lineBreak = false;
+		int key;
+		while ((key = read()) != KeyDecoder.PASTE_END && key != KeyDecoder.EOF) {
+			if (key == EscapeCharacter.TAB) {
+				key = ' ';
+			}
+			if (KeyDecoder.isText(key)) {
+				if (lineBreak) {
+					text.append("; ");
+					lineBreak = false;
+				}
+				text.appendCodePoint(key);
+			} else if (key == EscapeCharacter.ENTER || key == '\r') {
+				lineBreak = text.length() > 0;
+			}
+		}
+		if (text.length() > 0) {
+			line.insert(text);
+			renderer.render(line);
+		}
+	}
+
+	/**
+	 * Inserts a character at the cursor, as a surrogate pair if it is outside the
+	 * Basic Multilingual Plane
+	 */
+	private static void insert(int codePoint, LineBuffer line) {
+		if (Character.isBmpCodePoint(codePoint)) {
+			line.insert((char) codePoint);
+		} else {
+			line.insert(Character.highSurrogate(codePoint));
+			line.insert(Character.lowSurrogate(codePoint));
+		}
+	}
+
+	/**
+	 * Finds where the word that ends at the end of the given text starts. Words are
+	 * separated by spaces and by the ';' that ends commands.
+	 *
+	 * @param text
+	 *            characters before the cursor
+	 * @return index of the first character of the last word
+	 */
+	private int wordStart(String text) {
+		int i = text.length();
+		while (i > 0 && text.charAt(i - 1) != ' ' && text.charAt(i - 1) != ';') {
+			i--;
+		}
+		return i;
+	}
+
+	/**
+	 * Searches the history backwards for the most recent entry containing the
+	 * characters typed, showing it in place of the input line. Pressing 'ctrl-R'
+	 * again finds the next older match, and 'ctrl-G' cancels the search. Any other
+	 * key ends the search with the input line set to the entry found.
+	 *
+	 * @param line
+	 *            the input line
+	 * @return the key that ended the search, still to be processed, or
+	 *         {@link #NO_KEY} if there is none
+	 * @throws IOException
+	 */
+	private int searchHistory(LineBuffer line) throws IOException {
+		StringBuilder query = new StringBuilder();
+		LineBuffer view = new LineBuffer();
+		int match = -1;
+		boolean failed = false;
+		while (true) {
+			view.set(failed ? "(failed reverse-i-search)`" : "(reverse-i-search)`");
+			view.insert(query);
+			view.insert("': ");
+			if (match >= 0) {
+				String entry = history.get(match);
+				int cursor = view.getCursor() + Math.max(0, entry.indexOf(query.toString()));
+				view.insert(entry);
+				view.setCursor(cursor);
+			}
+			renderer.render(view);
+			out.endEvent();
+
+			int next = read();
+			int found;
+			switch (next) {
+			case EscapeCharacter.CTRL_R:
+				found = history.search(query, match + 1);
+				break;
+			case EscapeCharacter.DELETE_NUMPAD:
+			case EscapeCharacter.DELETE:
+				if (query.length() == 0) {
+					out.print(alert);
+					continue;
+				}
+				query.setLength(query.offsetByCodePoints(query.length(), -1));
+				found = history.search(query, 0);
+				match = -1;
+				break;
+			case EscapeCharacter.CTRL_G:
+				renderer.render(line);
+				return NO_KEY;
+			default:
+				if (!KeyDecoder.isText(next)) {
+					// any other key ends the search, keeping the entry found
+					if (match >= 0) {
+						line.set(history.get(match));
+					}
+					renderer.render(line);
+					return next;
+				}
+				query.appendCodePoint(next);
+				found = history.search(query, match);
+			}
+			failed = found == -1 && query.length() > 0;
+			if (failed) {
+				out.print(alert);
+			} else {
+				match = found;
+			}
+		}
+	}
+
+	/**
+	 * Takes in user input and prints result of each character, completing the
+	 * whole line from a list of references when the 'tab' key is pressed.
+	 *
+	 * @param commandReferences
+	 *            possible references that can be toggled with the 'tab' key
+	 * @param prompt
+	 *            the first String to come up on the CLI to prompt the user for
+	 *            input
+	 * @return result of user input
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public String promptUserInput(final ArrayList<String> commandReferences, String prompt)
+			throws IOException, InterruptedException {
+		return promptUserInput(new Completer() {
+			@Override
+			public void complete(String text, int wordStart, List<String> candidates) {
+				if (wordStart != 0) {
+					return;
+				}
+				for (String reference : commandReferences) {
+					if (reference.startsWith(text)) {
+						candidates.add(reference);
+					}
+				}
+			}
+		}, prompt);
+	}
+
+	/**
+	 * Takes in user input and prints result of each character. Keys are read with
+	 * a {@link KeyDecoder}, so any UTF-8 character can be typed, and the arrow,
+	 * Home, End, Delete and Page Up/Down keys, Ctrl or Alt with the left and right
+	 * arrows to move by word, Alt-Backspace to delete a word, and 'ctrl-R' to
+	 * search the history when it is enabled can be used. If this
+	 * editor reads from the terminal and the terminal is not already in raw input
+	 * mode, it is switched to raw input mode for the duration of the prompt.
+	 *
+	 * @param completer
+	 *            supplies the words that can be toggled with the 'tab' key
+	 * @param prompt
+	 *            the first String to come up on the CLI to prompt the user for
+	 *            input
+	 * @return result of user input
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public String promptUserInput(Completer completer, String prompt)
+			throws IOException, InterruptedException {
+		boolean sessionRaw = !terminal || ConsoleUtil.isRawInput();
+		if (!sessionRaw) {
+			ConsoleUtil.setTerminalRawInput();
+		}
+
+		synchronized (out) {
+			if (bracketedPasteEnabled) {
+				out.print(BRACKETED_PASTE_ON);
+			}
+			out.print(prompt);
+			renderer.reset();
+			activePrompt = prompt;
+		}
+		out.flush();
+
+		int histIndex = -1;
+		int pending = NO_KEY;
+		ArrayList<String> matching = new ArrayList<>();
+
+		boolean readNext = true;
+
+		LineBuffer line = new LineBuffer(); // what will get printed and executed
+		LineBuffer current = new LineBuffer(); // used for toggling back to unentered characters
+
+		while (readNext) {
+			int key = pending != NO_KEY ? pending : read();
+			pending = NO_KEY;
+			if (key == KeyDecoder.EOF) {
+				break;
+			}
+
+			switch (key) {
+			case KeyDecoder.UP:
+			case KeyDecoder.PAGE_UP:
+				if (!historyEnabled) {
+					break;
+				}
+				int older = key == KeyDecoder.UP ? histIndex + 1 : history.size() - 1;
+				if (older > histIndex && older < history.size()) {
+					if (histIndex == -1) {
+						current.set(line);
+					}
+					histIndex = older;
+					line.set(history.get(histIndex));
+					renderer.render(line);
+					break;
+				}
+				out.print(alert);
+				break;
+			case KeyDecoder.DOWN:
+			case KeyDecoder.PAGE_DOWN:
+				if (!historyEnabled) {
+					break;
+				}
+				if (histIndex > -1) {
+					histIndex = key == KeyDecoder.DOWN ? histIndex - 1 : -1;
+					line.set(histIndex == -1 ? current : history.get(histIndex));
+					renderer.render(line);
+					break;
+				}
+				out.print(alert);
+				break;
+			case KeyDecoder.RIGHT:
+				moveCursor(false, line);
+				break;
+			case KeyDecoder.LEFT:
+				moveCursor(true, line);
+				break;
+			case KeyDecoder.HOME:
+				moveCursorTo(0, line);
+				break;
+			case KeyDecoder.END:
+				moveCursorTo(line.length(), line);
+				break;
+			case KeyDecoder.CTRL | KeyDecoder.LEFT:
+			case KeyDecoder.ALT | 'b':
+				moveCursorTo(previousWord(line), line);
+				break;
+			case KeyDecoder.CTRL | KeyDecoder.RIGHT:
+			case KeyDecoder.ALT | 'f':
+				moveCursorTo(nextWord(line), line);
+				break;
+			case KeyDecoder.DELETE:
+				if (line.deleteForward()) {
+					renderer.render(line);
+				} else {
+					out.print(alert);
+				}
+				break;
+			case KeyDecoder.ALT | KeyDecoder.BACKSPACE:
+				int start = previousWord(line);
+				if (start == line.getCursor()) {
+					out.print(alert);
+					break;
+				}
+				while (line.getCursor() > start) {
+					line.deleteBackward();
+				}
+				renderer.render(line);
+				break;
+			case EscapeCharacter.TAB:
+				if (!tabCompletionEnabled) {
+					break;
+				}
+				// grab possible completions of the word at the cursor
+				int cursor = line.getCursor();
+				String text = line.substring(0, cursor);
+				String tail = line.substring(cursor, line.length());
+				int wordStart = wordStart(text);
+				matching.clear();
+				completer.complete(text, wordStart, matching);
+				if (matching.isEmpty()) {
+					out.print(alert);
+					break;
+				}
+
+				// toggle through matching words, wait for non-tab key and process result
+				int commandIndex = 0;
+				while (true) {
+					if (commandIndex >= matching.size()) {
+						commandIndex = 0;
+					}
+					line.set(text.substring(0, wordStart));
+					line.insert(matching.get(commandIndex));
+					int completed = line.getCursor();
+					line.insert(tail);
+					line.setCursor(completed);
+					commandIndex++;
+					renderer.render(line);
+					out.endEvent();
+
+					int next = read();
+					if (next != EscapeCharacter.TAB) {
+						pending = next; // processed next, including the end of input
+						break;
+					}
+				}
+				break;
+			case EscapeCharacter.CTRL_R:
+				if (!historyEnabled) {
+					out.print(alert);
+					break;
+				}
+				pending = searchHistory(line);
+				histIndex = -1;
+				break;
+			case KeyDecoder.PASTE_START:
+				paste(line);
+				break;
+			case EscapeCharacter.ENTER:
+				synchronized (out) {
+					if (bracketedPasteEnabled) {
+						out.print(BRACKETED_PASTE_OFF);
+					}
+					out.println();
+					activePrompt = null;
+				}
+				readNext = false;
+				break;
+			case EscapeCharacter.DELETE_NUMPAD:
+			case EscapeCharacter.DELETE:
+				if (line.deleteBackward()) {
+					renderer.render(line);
+				} else {
+					out.print(alert);
+				}
+				break;
+			default:
+				if (KeyDecoder.isText(key)) {
+					insert(key, line);
+					renderer.render(line);
+				}
+				// other keys have no use yet, and are ignored rather than inserted
+			}
+			out.endEvent();
+		}
+
+		if (readNext) { // end of input stream
+			synchronized (out) {
+				if (bracketedPasteEnabled) {
+					out.print(BRACKETED_PASTE_OFF);
+				}
+				out.println();
+				activePrompt = null;
+			}
+			out.flush();
+		}
+		if (!sessionRaw) {
+			ConsoleUtil.setTerminalRegularInput();
+		}
+		return line.toString();
+	}
+}
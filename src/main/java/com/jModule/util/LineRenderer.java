@@ -0,0 +1,190 @@
+package com.jmodule.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the user-given characters shown on the CLI after the prompt
+ * and brings the CLI up to date with a line by sending only the changed region.
+ * The cursor is moved to the first character that differs, the rest of the new
+ * line is written, and the leftover characters of a longer old line are erased
+ * with a single erase-to-end-of-line sequence.
+ * <P>
+ * Cursor movements are measured in terminal columns rather than in chars: a
+ * surrogate pair is one column, East Asian wide characters and emoji are two,
+ * and combining marks and other zero-width characters are none. Lines wider
+ * than the terminal are not handled.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+final class LineRenderer {
+
+	private static final String CSI = "\033[";
+	private static final String ERASE_TO_END = "\033[K";
+
+	private final TerminalWriter out;
+	private char[] shown = new char[64];
+	private int shownLength = 0;
+	private int shownCursor = 0;
+
+	/**
+	 * @param out
+	 *            writer that redraw output is sent to
+	 */
+	LineRenderer(TerminalWriter out) {
+		this.out = out;
+	}
+
+	/**
+	 * Forgets what is on the CLI. Call this right after printing the prompt.
+	 */
+	void reset() {
+		shownLength = 0;
+		shownCursor = 0;
+	}
+
+	/**
+	 * Updates the CLI to show the given line with the cursor at the line's cursor
+	 * position. Output is left in the writer until it is flushed.
+	 *
+	 * @param line
+	 *            line that should be shown after the prompt
+	 */
+	void render(LineBuffer line) {
+		synchronized (out) {
+			renderLine(line);
+		}
+	}
+
+	private void renderLine(LineBuffer line) {
+		int length = line.length();
+		int cursor = line.getCursor();
+
+		int diff = 0;
+		int common = Math.min(length, shownLength);
+		while (diff < common && shown[diff] == line.charAt(diff)) {
+			diff++;
+		}
+		// redraw from the start of the character that changed, including the
+		// high surrogate or base character before it
+		while (diff > 0 && diff < common && (Character.isLowSurrogate(shown[diff])
+				|| width(Character.codePointAt(shown, diff, shownLength)) == 0)) {
+			diff--;
+		}
+
+		if (diff == length && diff == shownLength) {
+			moveTo(cursor, line);
+		} else {
+			moveTo(diff, line);
+			for (int i = diff; i < length; i++) {
+				out.print(line.charAt(i));
+			}
+			if (length < shownLength) {
+				out.print(ERASE_TO_END);
+			}
+			if (shown.length < length) {
+				shown = Arrays.copyOf(shown, Math.max(shown.length * 2, length));
+			}
+			line.copyTo(diff, length, shown, diff);
+			shownLength = length;
+			shownCursor = length;
+			moveTo(cursor, line);
+		}
+	}
+
+	/**
+	 * Replaces the prompt and the characters shown after it with the given text,
+	 * then prints the prompt and the same characters again on the line below,
+	 * with the cursor where it was. Used when output from another thread is
+	 * printed while the user is typing.
+	 *
+	 * @param text
+	 *            text to print above the prompt
+	 * @param prompt
+	 *            the prompt shown before the user's characters
+	 */
+	void printAbove(CharSequence text, CharSequence prompt) {
+		synchronized (out) {
+			out.print('\r').print(ERASE_TO_END).println(text);
+			out.print(prompt);
+			for (int i = 0; i < shownLength; i++) {
+				out.print(shown[i]);
+			}
+			if (shownCursor < shownLength) {
+				out.print(CSI).print(columns(shownCursor, shownLength)).print('D');
+			}
+		}
+	}
+
+	/**
+	 * Moves the cursor within the characters that are shown on the CLI, using
+	 * whichever of backspaces, reprinted characters, or an ANSI cursor movement is
+	 * shorter
+	 *
+	 * @param target
+	 *            cursor position to move to
+	 * @param line
+	 *            line whose characters up to the target are already shown
+	 */
+	private void moveTo(int target, LineBuffer line) {
+		int n = shownCursor > target ? columns(target, shownCursor) : -columns(shownCursor, target);
+		if (n > 0) {
+			if (n <= 3) {
+				for (int i = 0; i < n; i++) {
+					out.print('\b');
+				}
+			} else {
+				out.print(CSI).print(n).print('D');
+			}
+		} else if (n < 0) {
+			n = -n;
+			if (n <= 3) {
+				for (int i = shownCursor; i < target; i++) {
+					out.print(line.charAt(i));
+				}
+			} else {
+				out.print(CSI).print(n).print('C');
+			}
+		}
+		shownCursor = target;
+	}
+
+	/**
+	 * @return number of terminal columns taken by the shown characters in the
+	 *         given range
+	 */
+	private int columns(int from, int to) {
+		int columns = 0;
+		for (int i = from; i < to;) {
+			int codePoint = Character.codePointAt(shown, i, to);
+			columns += width(codePoint);
+			i += Character.charCount(codePoint);
+		}
+		return columns;
+	}
+
+	/**
+	 * @return number of terminal columns a character takes: none for combining
+	 *         marks and format characters, two for East Asian wide and full-width
+	 *         characters and emoji, and one for any other character
+	 */
+	static int width(int codePoint) {
+		int type = Character.getType(codePoint);
+		if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT) {
+			return 0;
+		}
+		if (codePoint >= 0x1100 && (codePoint <= 0x115f // Hangul Jamo
+				|| codePoint >= 0x2e80 && codePoint <= 0xa4cf && codePoint != 0x303f // CJK to Yi
+				|| codePoint >= 0xac00 && codePoint <= 0xd7a3 // Hangul syllables
+				|| codePoint >= 0xf900 && codePoint <= 0xfaff // CJK compatibility ideographs
+				|| codePoint >= 0xfe30 && codePoint <= 0xfe4f // CJK compatibility forms
+				|| codePoint >= 0xff00 && codePoint <= 0xff60 // full-width forms
+				|| codePoint >= 0xffe0 && codePoint <= 0xffe6
+				|| codePoint >= 0x1f300 && codePoint <= 0x1f64f // emoji
+				|| codePoint >= 0x1f900 && codePoint <= 0x1f9ff
+				|| codePoint >= 0x20000 && codePoint <= 0x3fffd)) { // CJK extensions
+			return 2;
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,52 @@
+package com.jmodule.util;
+
+/**
+ * JNI binding to the termios functions of the C library. Toggles the
+ * controlling terminal between raw and regular input mode in-process, without
+ * spawning an stty subprocess.
+ * <P>
+ * The native half lives in {@code src/main/native/jmodule_termios.c} and is
+ * loaded from {@code libjmodule.so} on {@code java.library.path}. If the
+ * library cannot be loaded, {@link #isAvailable()} returns false and ConsoleUtil
+ * falls back to stty.
+ * 
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+final class NativeTerminal {
+
+	private static final boolean AVAILABLE = load();
+
+	private static boolean load() {
+		try {
+			System.loadLibrary("jmodule");
+			return true;
+		} catch (UnsatisfiedLinkError | SecurityException e) {
+			return false;
+		}
+	}
+
+	static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	/**
+	 * Disables canonical input and echo on /dev/tty. The original termios struct
+	 * is captured on the first call and kept for every later restore.
+	 * 
+	 * @return <code>true</code> if the terminal mode was changed
+	 */
+	static native boolean setRawInput();
+
+	/**
+	 * Restores the termios struct captured by the first call to
+	 * {@link #setRawInput()}.
+	 * 
+	 * @return <code>true</code> if the terminal mode was restored
+	 */
+	static native boolean restoreInput();
+
+	private NativeTerminal() {
+		throw new AssertionError();
+	}
+}
@@ -0,0 +1,264 @@
+package com.jmodule.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Sends output to a target stream, except for output written by threads that
+ * have been given a prefix. Output from those threads is collected a line at a
+ * time, given the thread's prefix, and printed above the prompt by a single
+ * printer thread, so that lines from different threads never interleave and
+ * the user's input line is printed again below them. Threads can also capture
+ * their output instead, to have it printed later in a chosen order, or send it
+ * to a stream of their own, such as the connection of a remote session.
+ * <P>
+ * Writing threads only hand finished lines over to the printer thread, so they
+ * never wait on the CLI while holding the lock of a PrintStream wrapped around
+ * this stream.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class RoutedOutputStream extends OutputStream {
+
+	private static class Route {
+		final String prefix; // null if the output is captured or redirected
+		final OutputStream sink; // null if lines are printed above the prompt
+		final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+		Route(String prefix, OutputStream sink) {
+			this.prefix = prefix;
+			this.sink = sink;
+		}
+	}
+
+	private final OutputStream target;
+	private final LineEditor editor;
+	private final Charset charset = Charset.defaultCharset();
+	private final ThreadLocal<Route> routes = new ThreadLocal<>();
+	private final LinkedBlockingQueue<String> lines = new LinkedBlockingQueue<>();
+	private Thread printer;
+
+	/**
+	 * @param target
+	 *            stream that output from threads without a prefix is sent to
+	 * @param editor
+	 *            editor that routed lines are printed above the prompt of
+	 */
+	public RoutedOutputStream(OutputStream target, LineEditor editor) {
+		this.target = target;
+		this.editor = editor;
+	}
+
+	/**
+	 * @return stream that output from threads without a prefix is sent to
+	 */
+	public OutputStream getTarget() {
+		return target;
+	}
+
+	/**
+	 * Routes everything the current thread writes from now on above the prompt,
+	 * starting each line with the given prefix.
+	 *
+	 * @param prefix
+	 *            text to start each line of output with
+	 */
+	public void route(String prefix) {
+		routes.set(new Route(prefix, null));
+	}
+
+	/**
+	 * Routes everything the current thread writes from now on to the given
+	 * stream, starting each line with the given prefix. Lines are written to the
+	 * stream whole, while holding its lock.
+	 *
+	 * @param prefix
+	 *            text to start each line of output with
+	 * @param sink
+	 *            stream to write the lines to, or null to print them above the
+	 *            prompt
+	 */
+	public void route(String prefix, OutputStream sink) {
+		routes.set(new Route(prefix, sink));
+	}
+
+	/**
+	 * Sends everything the current thread writes from now on straight to the
+	 * given stream, until {@link #unroute()} is called.
+	 *
+	 * @param sink
+	 *            stream to send output to
+	 */
+	public void redirect(OutputStream sink) {
+		routes.set(new Route(null, sink));
+	}
+
+	/**
+	 * @return the stream that the current thread's output is redirected or routed
+	 *         to, or null if it is sent to the target stream or above the prompt
+	 */
+	public OutputStream getSink() {
+		Route route = routes.get();
+		return route == null ? null : route.sink;
+	}
+
+	/**
+	 * Collects everything the current thread writes from now on, until
+	 * {@link #endCapture()} is called.
+	 */
+	public void capture() {
+		routes.set(new Route(null, null));
+	}
+
+	/**
+	 * Stops collecting the current thread's output
+	 *
+	 * @return everything the thread wrote since {@link #capture()} was called
+	 */
+	public String endCapture() {
+		Route route = routes.get();
+		routes.remove();
+		return route == null ? "" : route.line.toString(charset);
+	}
+
+	/**
+	 * Stops routing the current thread's output. A line that the thread left
+	 * unfinished is printed as it is.
+	 */
+	public void unroute() {
+		Route route = routes.get();
+		routes.remove();
+		if (route != null && route.prefix != null && route.line.size() > 0) {
+			printLine(route.prefix + route.line.toString(charset), route.sink);
+		}
+	}
+
+	/**
+	 * Prints a line above the prompt, in order with the lines routed from other
+	 * threads.
+	 *
+	 * @param line
+	 *            line of output, without a line separator
+	 */
+	public void printLine(String line) {
+		startPrinter();
+		lines.add(line);
+	}
+
+	/**
+	 * Prints a line to the given stream, or above the prompt if there is none. A
+	 * stream that can no longer be written to is ignored.
+	 *
+	 * @param line
+	 *            line of output, without a line separator
+	 * @param sink
+	 *            stream to write the line to, or null to print it above the prompt
+	 */
+	public void printLine(String line, OutputStream sink) {
+		if (sink == null) {
+			printLine(line);
+			return;
+		}
+		byte[] bytes = (line + "\n").getBytes(charset);
+		synchronized (sink) {
+			try {
+				sink.write(bytes);
+				sink.flush();
+			} catch (IOException e) {
+				// the stream has been closed
+			}
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		Route route = routes.get();
+		if (route == null) {
+			target.write(b);
+		} else if (route.prefix == null && route.sink != null) {
+			route.sink.write(b);
+		} else if (route.prefix == null) {
+			route.line.write(b);
+		} else if (b == '\n') {
+			endLine(route);
+		} else if (b != '\r') {
+			route.line.write(b);
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		Route route = routes.get();
+		if (route == null) {
+			target.write(b, off, len);
+			return;
+		}
+		if (route.prefix == null && route.sink != null) {
+			route.sink.write(b, off, len);
+			return;
+		}
+		if (route.prefix == null) {
+			route.line.write(b, off, len);
+			return;
+		}
+		int start = off;
+		for (int i = off; i < off + len; i++) {
+			if (b[i] == '\n') {
+				int end = i > start && b[i - 1] == '\r' ? i - 1 : i;
+				route.line.write(b, start, end - start);
+				endLine(route);
+				start = i + 1;
+			}
+		}
+		route.line.write(b, start, off + len - start);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		Route route = routes.get();
+		if (route == null) {
+			target.flush();
+		} else if (route.prefix == null && route.sink != null) {
+			route.sink.flush();
+		}
+	}
+
+	private void endLine(Route route) {
+		printLine(route.prefix + route.line.toString(charset), route.sink);
+		route.line.reset();
+	}
+
+	private synchronized void startPrinter() {
+		if (printer != null) {
+			return;
+		}
+		printer = new Thread("jmodule-output") {
+			@Override
+			public void run() {
+				ArrayList<String> batch = new ArrayList<>();
+				StringBuilder text = new StringBuilder();
+				try {
+					while (true) {
+						batch.add(lines.take());
+						lines.drainTo(batch);
+						for (int i = 0; i < batch.size(); i++) {
+							text.append(i == 0 ? "" : "\n").append(batch.get(i));
+						}
+						editor.printAbovePrompt(text);
+						batch.clear();
+						text.setLength(0);
+					}
+				} catch (InterruptedException | IOException e) {
+					// output can no longer be printed
+				}
+			}
+		};
+		printer.setDaemon(true);
+		printer.start();
+	}
+}
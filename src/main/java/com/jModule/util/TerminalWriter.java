@@ -0,0 +1,178 @@
+package com.jmodule.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Collects output for the CLI and sends it to the underlying stream in as few
+ * writes as possible. Nothing is written until {@link #flush()} or
+ * {@link #endEvent()} is called, so all of the output produced while handling
+ * one keystroke reaches the terminal in a single write.
+ * <P>
+ * The writer counts the bytes it sends and the number of writes it makes on the
+ * underlying stream. Each write on an unbuffered stream such as a
+ * FileOutputStream is a single system call.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class TerminalWriter {
+
+	private final OutputStream out;
+	private final StringBuilder pending = new StringBuilder();
+	private final CharsetEncoder encoder;
+	private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+
+	private long bytesWritten = 0;
+	private long writeCount = 0;
+	private long events = 0;
+	private long eventBytes = 0;
+	private long eventWrites = 0;
+
+	/**
+	 * @param out
+	 *            stream to send output to, ideally unbuffered
+	 */
+	public TerminalWriter(OutputStream out) {
+		this(out, Charset.defaultCharset());
+	}
+
+	/**
+	 * @param out
+	 *            stream to send output to, ideally unbuffered
+	 * @param charset
+	 *            charset used to encode output
+	 */
+	public TerminalWriter(OutputStream out, Charset charset) {
+		this.out = out;
+		this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	public synchronized TerminalWriter print(char c) {
+		pending.append(c);
+		return this;
+	}
+
+	public synchronized TerminalWriter print(int i) {
+		pending.append(i);
+		return this;
+	}
+
+	public synchronized TerminalWriter print(CharSequence s) {
+		pending.append(s);
+		return this;
+	}
+
+	public synchronized TerminalWriter println(CharSequence s) {
+		pending.append(s).append('\n');
+		return this;
+	}
+
+	public synchronized TerminalWriter println() {
+		pending.append('\n');
+		return this;
+	}
+
+	/**
+	 * Sends all pending output to the underlying stream. Output written to
+	 * <code>System.out</code> beforehand is flushed first so that the two stay in
+	 * order. <code>System.out</code> is flushed before this writer is locked, so
+	 * that a thread holding the lock of <code>System.out</code> can still print
+	 * through this writer.
+	 *
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		System.out.flush();
+		synchronized (this) {
+			flushPending();
+		}
+	}
+
+	private void flushPending() throws IOException {
+		if (pending.length() == 0) {
+			return;
+		}
+
+		CharBuffer chars = CharBuffer.wrap(pending);
+		encoder.reset();
+		while (encoder.encode(chars, bytes, true).isOverflow()) {
+			write();
+		}
+		while (encoder.flush(bytes).isOverflow()) {
+			write();
+		}
+		write();
+		pending.setLength(0);
+		out.flush();
+	}
+
+	/**
+	 * Flushes the output produced while handling one input event and records it in
+	 * the per-event counters.
+	 *
+	 * @throws IOException
+	 */
+	public void endEvent() throws IOException {
+		System.out.flush();
+		synchronized (this) {
+			long bytesBefore = bytesWritten;
+			long writesBefore = writeCount;
+			flushPending();
+			events++;
+			eventBytes += bytesWritten - bytesBefore;
+			eventWrites += writeCount - writesBefore;
+		}
+	}
+
+	private void write() throws IOException {
+		if (bytes.position() == 0) {
+			return;
+		}
+		out.write(bytes.array(), 0, bytes.position());
+		bytesWritten += bytes.position();
+		writeCount++;
+		bytes.clear();
+	}
+
+	/**
+	 * @return total number of bytes sent to the underlying stream
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return total number of writes made on the underlying stream
+	 */
+	public long getWriteCount() {
+		return writeCount;
+	}
+
+	/**
+	 * @return number of input events ended with {@link #endEvent()}
+	 */
+	public long getEventCount() {
+		return events;
+	}
+
+	/**
+	 * @return average number of bytes sent per input event
+	 */
+	public double getBytesPerEvent() {
+		return events == 0 ? 0 : (double) eventBytes / events;
+	}
+
+	/**
+	 * @return average number of writes made per input event
+	 */
+	public double getWritesPerEvent() {
+		return events == 0 ? 0 : (double) eventWrites / events;
+	}
+}
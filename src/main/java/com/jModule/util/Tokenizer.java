@@ -0,0 +1,270 @@
+package com.jmodule.util;
+
+import java.util.Arrays;
+
+/**
+ * Splits a line of user input into chained commands and their arguments in a
+ * single pass. Arguments are separated by spaces or tabs, and commands are
+ * chained with <code>;</code>, whether or not it is attached to a word.
+ * Commands joined with <code>&amp;&amp;&amp;</code>, standing alone between
+ * spaces, are marked to run in parallel. When background commands are enabled,
+ * a command ended with <code>&amp;</code> instead of <code>;</code> is marked
+ * to run in the background; the <code>&amp;</code> may be attached to the last
+ * word but must be followed by a space, a <code>;</code> or the end of the
+ * line. Any other <code>&amp;</code>, such as the ones in
+ * <code>a?b=1&amp;c=2</code> or <code>a &amp;&amp; b</code>, is part of an
+ * argument.
+ * <P>
+ * Double quotes group characters into one argument and allow <code>\"</code>
+ * and <code>\\</code> escapes inside them. Single quotes group characters
+ * without any escapes. Outside of quotes, a backslash makes the next character
+ * part of the argument, so <code>\;</code>, <code>\&amp;</code> and
+ * <code>\ </code> do not separate anything. An unterminated quote is closed at
+ * the end of the line.
+ * <P>
+ * The text of every argument is copied, with quotes and escapes removed, into
+ * a character buffer that is reused between lines. Arguments are kept as
+ * offsets into that buffer, and Strings are only created when they are asked
+ * for. A Tokenizer is not thread-safe.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+public class Tokenizer {
+
+	private char[] chars = new char[128];
+	private int[] tokenStarts = new int[16];
+	private int[] tokenEnds = new int[16];
+	private int[] commandStarts = new int[8];
+	private boolean[] background = new boolean[8];
+	private boolean[] parallel = new boolean[8];
+	private int tokenCount = 0;
+	private int commandCount = 0;
+	private int length = 0;
+	private boolean backgroundEnabled = false;
+
+	/**
+	 * Sets whether a command ended with <code>&amp;</code> is marked to run in
+	 * the background. If not, <code>&amp;</code> is only used to join parallel
+	 * commands. This value is set to false by default.
+	 *
+	 * @param enabled
+	 *            if true, <code>&amp;</code> can end a command
+	 */
+	public void setBackgroundEnabled(boolean enabled) {
+		backgroundEnabled = enabled;
+	}
+
+	/**
+	 * Splits a line into commands and arguments, replacing the result of the
+	 * previous call
+	 *
+	 * @param line
+	 *            line of user input
+	 */
+	public void tokenize(CharSequence line) {
+		tokenCount = 0;
+		commandCount = 0;
+		length = 0;
+		if (chars.length < line.length()) {
+			chars = new char[Math.max(line.length(), chars.length * 2)];
+		}
+
+		boolean inToken = false;
+		boolean commandOpen = false;
+		char quote = 0;
+
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+
+			if (quote == '\'') {
+				if (c == '\'') {
+					quote = 0;
+				} else {
+					chars[length++] = c;
+				}
+				continue;
+			}
+			if (quote == '"') {
+				if (c == '"') {
+					quote = 0;
+				} else if (c == '\\' && i + 1 < line.length()
+						&& (line.charAt(i + 1) == '"' || line.charAt(i + 1) == '\\')) {
+					chars[length++] = line.charAt(++i);
+				} else {
+					chars[length++] = c;
+				}
+				continue;
+			}
+
+			switch (c) {
+			case ' ':
+			case '\t':
+				if (inToken) {
+					endToken();
+					inToken = false;
+				}
+				break;
+			case ';':
+				if (inToken) {
+					endToken();
+					inToken = false;
+				}
+				commandOpen = false;
+				break;
+			case '&':
+				int run = 1;
+				while (i + run < line.length() && line.charAt(i + run) == '&') {
+					run++;
+				}
+				char next = i + run < line.length() ? line.charAt(i + run) : ' ';
+				boolean ends = next == ' ' || next == '\t' || next == ';';
+				if (ends && (run == 3 && !inToken || run == 1 && backgroundEnabled)) {
+					if (inToken) {
+						endToken();
+						inToken = false;
+					}
+					if (commandOpen) {
+						if (run == 3) {
+							parallel[commandCount - 1] = true;
+						} else {
+							background[commandCount - 1] = true;
+						}
+					}
+					commandOpen = false;
+				} else {
+					// not an operator, so the whole run of '&' is part of an argument
+					if (!inToken) {
+						if (!commandOpen) {
+							startCommand();
+							commandOpen = true;
+						}
+						startToken();
+						inToken = true;
+					}
+					for (int j = 0; j < run; j++) {
+						chars[length++] = '&';
+					}
+				}
+				i += run - 1;
+				break;
+			default:
+				if (!inToken) {
+					if (!commandOpen) {
+						startCommand();
+						commandOpen = true;
+					}
+					startToken();
+					inToken = true;
+				}
+				if (c == '"' || c == '\'') {
+					quote = c;
+				} else if (c == '\\' && i + 1 < line.length()) {
+					chars[length++] = line.charAt(++i);
+				} else {
+					chars[length++] = c;
+				}
+			}
+		}
+		if (inToken) {
+			endToken();
+		}
+	}
+
+	private void startCommand() {
+		if (commandCount == commandStarts.length) {
+			commandStarts = Arrays.copyOf(commandStarts, commandCount * 2);
+			background = Arrays.copyOf(background, commandCount * 2);
+			parallel = Arrays.copyOf(parallel, commandCount * 2);
+		}
+		background[commandCount] = false;
+		parallel[commandCount] = false;
+		commandStarts[commandCount++] = tokenCount;
+	}
+
+	private void startToken() {
+		if (tokenCount == tokenStarts.length) {
+			tokenStarts = Arrays.copyOf(tokenStarts, tokenCount * 2);
+			tokenEnds = Arrays.copyOf(tokenEnds, tokenCount * 2);
+		}
+		tokenStarts[tokenCount] = length;
+	}
+
+	private void endToken() {
+		tokenEnds[tokenCount++] = length;
+	}
+
+	/**
+	 * @return number of non-empty commands on the line
+	 */
+	public int getCommandCount() {
+		return commandCount;
+	}
+
+	/**
+	 * @param command
+	 *            index of a command on the line
+	 * @return number of tokens in the command, including its reference
+	 */
+	public int getTokenCount(int command) {
+		int end = command + 1 < commandCount ? commandStarts[command + 1] : tokenCount;
+		return end - commandStarts[command];
+	}
+
+	/**
+	 * @param command
+	 *            index of a command on the line
+	 * @return <code>true</code> if the command was ended with <code>&amp;</code>
+	 */
+	public boolean isBackground(int command) {
+		return background[command];
+	}
+
+	/**
+	 * @param command
+	 *            index of a command on the line
+	 * @return <code>true</code> if the command is joined to the next command with
+	 *         <code>&amp;&amp;&amp;</code>
+	 */
+	public boolean isParallel(int command) {
+		return parallel[command] && command + 1 < commandCount;
+	}
+
+	/**
+	 * @param command
+	 *            index of a command on the line
+	 * @param token
+	 *            index of a token within the command
+	 * @return the token's text, with quotes and escapes removed
+	 */
+	public String getToken(int command, int token) {
+		int t = commandStarts[command] + token;
+		return new String(chars, tokenStarts[t], tokenEnds[t] - tokenStarts[t]);
+	}
+
+	/**
+	 * @param command
+	 *            index of a command on the line
+	 * @return every token in the command, starting with its reference
+	 */
+	public String[] getTokens(int command) {
+		String[] tokens = new String[getTokenCount(command)];
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = getToken(command, i);
+		}
+		return tokens;
+	}
+
+	/**
+	 * @param command
+	 *            index of a command on the line
+	 * @return the tokens in the command that follow its reference
+	 */
+	public String[] getArguments(int command) {
+		String[] args = new String[getTokenCount(command) - 1];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = getToken(command, i + 1);
+		}
+		return args;
+	}
+}
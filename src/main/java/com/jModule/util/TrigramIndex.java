@@ -0,0 +1,114 @@
+package com.jmodule.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Maps every sequence of three characters to the entries that contain it, so
+ * that the entries containing a search string can be found by looking at the
+ * entries that contain its least common three characters, instead of at every
+ * entry. Entries are identified by increasing sequence numbers, and each list
+ * of entries is kept sorted.
+ *
+ * @author Pierce Kelaita
+ * @version 1.4.0
+ */
+final class TrigramIndex {
+
+	static final int N = 3;
+
+	/**
+	 * Sorted sequence numbers of the entries containing one trigram
+	 */
+	static final class Postings {
+		int[] seqs = new int[4];
+		int size = 0;
+
+		/**
+		 * @param seq
+		 *            a sequence number
+		 * @return index of the last entry whose sequence number is at most the
+		 *         given one, or -1 if there is none
+		 */
+		int lastAtMost(int seq) {
+			int i = Arrays.binarySearch(seqs, 0, size, seq);
+			return i >= 0 ? i : -i - 2;
+		}
+	}
+
+	private static final Postings EMPTY = new Postings();
+
+	private final HashMap<Long, Postings> postings = new HashMap<>();
+
+	private static long key(CharSequence s, int i) {
+		return (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+	}
+
+	/**
+	 * Adds an entry. Entries must be added in order of their sequence numbers.
+	 *
+	 * @param seq
+	 *            sequence number of the entry
+	 * @param entry
+	 *            text of the entry
+	 */
+	void add(int seq, String entry) {
+		for (int i = 0; i + N <= entry.length(); i++) {
+			Long key = key(entry, i);
+			Postings p = postings.get(key);
+			if (p == null) {
+				p = new Postings();
+				postings.put(key, p);
+			} else if (p.seqs[p.size - 1] == seq) {
+				continue; // trigram repeated within the entry
+			}
+			if (p.size == p.seqs.length) {
+				p.seqs = Arrays.copyOf(p.seqs, p.size * 2);
+			}
+			p.seqs[p.size++] = seq;
+		}
+	}
+
+	/**
+	 * Removes every entry with a sequence number below the given one
+	 *
+	 * @param oldest
+	 *            sequence number of the oldest entry to keep
+	 */
+	void prune(int oldest) {
+		Iterator<Postings> it = postings.values().iterator();
+		while (it.hasNext()) {
+			Postings p = it.next();
+			int drop = p.lastAtMost(oldest - 1) + 1;
+			if (drop == p.size) {
+				it.remove();
+			} else if (drop > 0) {
+				p.size -= drop;
+				System.arraycopy(p.seqs, drop, p.seqs, 0, p.size);
+			}
+		}
+	}
+
+	/**
+	 * Returns the entries containing the least common trigram of a query. Every
+	 * entry containing the query is among them.
+	 *
+	 * @param query
+	 *            search string of at least {@value #N} characters
+	 * @return the shortest list of entries among the query's trigrams
+	 */
+	Postings candidates(CharSequence query) {
+		Postings best = null;
+		for (int i = 0; i + N <= query.length(); i++) {
+			Postings p = postings.get(key(query, i));
+			if (p == null) {
+				return EMPTY;
+			}
+			if (best == null || p.size < best.size) {
+				best = p;
+			}
+		}
+		return best;
+	}
+}
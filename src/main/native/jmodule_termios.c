@@ -0,0 +1,53 @@
+/*
+ * Native half of com.jmodule.util.NativeTerminal.
+ *
+ * Build on Linux with:
+ *   gcc -shared -fPIC -O2 -I"$JAVA_HOME/include" -I"$JAVA_HOME/include/linux" \
+ *       -o libjmodule.so jmodule_termios.c
+ * (use include/darwin and libjmodule.dylib on macOS) and put the library on
+ * java.library.path.
+ */
+#include <jni.h>
+#include <fcntl.h>
+#include <termios.h>
+#include <unistd.h>
+
+static int tty_fd = -1;
+static int saved = 0;
+static struct termios original;
+
+static int open_tty(void) {
+	if (tty_fd < 0) {
+		tty_fd = open("/dev/tty", O_RDWR | O_NOCTTY);
+	}
+	return tty_fd;
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_jmodule_util_NativeTerminal_setRawInput(JNIEnv *env, jclass cls) {
+	struct termios raw;
+	int fd = open_tty();
+
+	if (fd < 0) {
+		return JNI_FALSE;
+	}
+	if (!saved) {
+		if (tcgetattr(fd, &original) != 0) {
+			return JNI_FALSE;
+		}
+		saved = 1;
+	}
+	raw = original;
+	raw.c_lflag &= ~(ICANON | ECHO);
+	raw.c_cc[VMIN] = 1;
+	raw.c_cc[VTIME] = 0;
+	return tcsetattr(fd, TCSANOW, &raw) == 0 ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jboolean JNICALL
+Java_com_jmodule_util_NativeTerminal_restoreInput(JNIEnv *env, jclass cls) {
+	if (tty_fd < 0 || !saved) {
+		return JNI_FALSE;
+	}
+	return tcsetattr(tty_fd, TCSANOW, &original) == 0 ? JNI_TRUE : JNI_FALSE;
+}